@@ -1,7 +1,9 @@
 package fi.hacklabmikkeli.labapi.server.announcements;
 
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
@@ -9,6 +11,7 @@ import javax.inject.Inject;
 import fi.hacklabmikkeli.labapi.server.persistence.dao.AnnouncementDAO;
 import fi.hacklabmikkeli.labapi.server.persistence.dao.AnnouncementRecipientDAO;
 import fi.hacklabmikkeli.labapi.server.persistence.model.Announcement;
+import fi.hacklabmikkeli.labapi.server.persistence.model.AnnouncementHeader;
 import fi.hacklabmikkeli.labapi.server.persistence.model.AnnouncementRecipient;
 import fi.hacklabmikkeli.labapi.server.persistence.model.AnnouncementType;
 
@@ -50,6 +53,18 @@ public class AnnouncementController {
     return announcementRecipientDAO.create(UUID.randomUUID(), announcement, recipientId);
   }
 
+  /**
+   * Creates new announcement recipients in batches
+   * 
+   * @param announcement announcement that recipients are for
+   * @param recipientIds User ids of the recipients
+   *
+   * @return created announcement reciepients 
+   */
+  public List<AnnouncementRecipient> createAnnouncementRecipients(Announcement announcement, List<UUID> recipientIds) {
+    return announcementRecipientDAO.createAll(announcement, recipientIds);
+  }
+
   /**
    * Lists recipients of annouincement
    * 
@@ -61,6 +76,28 @@ public class AnnouncementController {
     return announcementRecipientDAO.listByAnnouncement(announcement);
   }
 
+  /**
+   * Lists recipient user ids of multiple announcements with single query
+   * 
+   * @param announcements announcements
+   *
+   * @return recipient user ids mapped by announcement id
+   */
+  public Map<UUID, List<UUID>> listAnnouncementRecipientIds(List<Announcement> announcements) {
+    return announcementRecipientDAO.listRecipientIdsByAnnouncementIds(announcements.stream().map(Announcement::getId).collect(Collectors.toList()));
+  }
+
+  /**
+   * Counts recipients of multiple announcements with single query
+   * 
+   * @param announcementHeaders announcement headers
+   *
+   * @return recipient counts mapped by announcement id
+   */
+  public Map<UUID, Long> countAnnouncementRecipients(List<AnnouncementHeader> announcementHeaders) {
+    return announcementRecipientDAO.countByAnnouncementIds(announcementHeaders.stream().map(AnnouncementHeader::getId).collect(Collectors.toList()));
+  }
+
   /**
    * Finds announcement with id
    * 
@@ -84,13 +121,25 @@ public class AnnouncementController {
     return announcementDAO.listAnnouncementsOrderCreatedDesc(firstResult, maxResults);
   }
 
+  /**
+   * Lists announcement headers without loading announcement contents
+   * 
+   * @param firstResult first result to return (optional)
+   * @param maxResults max number of results to return (optinal)
+   * 
+   * @return list of announcement headers 
+   */
+  public List<AnnouncementHeader> listAnnouncementHeaders(Long firstResult, Long maxResults) {
+    return announcementDAO.listHeadersOrderCreatedDesc(firstResult, maxResults);
+  }
+
   /**
    * Deletes announcement
    * 
    * @param announcement Announcement to delete 
    */
   public void deleteAnnouncement(Announcement announcement) {
-    listAnnouncementRecipients(announcement).stream().forEach(announcementRecipientDAO::delete);
+    announcementRecipientDAO.deleteByAnnouncement(announcement);
     announcementDAO.delete(announcement);
   }
 
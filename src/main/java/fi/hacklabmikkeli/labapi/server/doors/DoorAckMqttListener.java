@@ -0,0 +1,69 @@
+package fi.hacklabmikkeli.labapi.server.doors;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.transaction.Transactional;
+
+import org.apache.commons.lang3.StringUtils;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.slf4j.Logger;
+
+import fi.hacklabmikkeli.labapi.server.mqtt.LabApiMqttListener;
+import fi.hacklabmikkeli.labapi.server.persistence.model.DoorAction;
+
+/**
+ * MQTT listener for door command acknowledgements. 
+ * 
+ * Doors acknowledge commands by publishing the command id into door/{doorId}/ack topic
+ * 
+ * @author Heikki Kurhinen
+ */
+@ApplicationScoped
+public class DoorAckMqttListener implements LabApiMqttListener {
+
+  public static final String DOOR_ACK_TOPIC = "door/+/ack";
+
+  @Inject
+  private DoorController doorController;
+
+  @Inject
+  private Logger logger;
+
+  @Override
+  public String getTopic() {
+    return DOOR_ACK_TOPIC;
+  }
+
+  @Override
+  public boolean isShared() {
+    return true;
+  }
+
+  @Override
+  @Transactional(Transactional.TxType.REQUIRES_NEW)
+  public void messageArrived(String topic, MqttMessage message) throws Exception {
+    OffsetDateTime acknowledgedAt = OffsetDateTime.now();
+    String[] topicParts = StringUtils.split(topic, '/');
+    String commandId = StringUtils.trim(new String(message.getPayload()));
+
+    DoorAction doorAction;
+    try {
+      doorAction = doorController.findDoorAction(UUID.fromString(commandId));
+    } catch (IllegalArgumentException e) {
+      logger.warn("Received malformed door acknowledgement {} from topic {}", commandId, topic);
+      return;
+    }
+
+    if (doorAction == null || topicParts.length != 3 || !StringUtils.equals(topicParts[1], doorAction.getDoor().getId().toString())) {
+      logger.warn("Received acknowledgement for unknown command {} from topic {}", commandId, topic);
+      return;
+    }
+
+    if (!doorController.acknowledgeDoorAction(doorAction, acknowledgedAt)) {
+      logger.warn("Received late acknowledgement for command {} with status {}", commandId, doorAction.getStatus());
+    }
+  }
+}
@@ -0,0 +1,27 @@
+package fi.hacklabmikkeli.labapi.server.doors;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+import fi.hacklabmikkeli.labapi.server.persistence.model.DoorActionType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * CDI event fired when door action is created
+ * 
+ * @author Heikki Kurhinen
+ */
+@Data
+@AllArgsConstructor
+public class DoorActionEvent {
+
+  private UUID doorId;
+
+  private UUID actionId;
+
+  private DoorActionType type;
+
+  private OffsetDateTime createdAt;
+
+}
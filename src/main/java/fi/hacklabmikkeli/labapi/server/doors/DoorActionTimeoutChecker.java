@@ -0,0 +1,34 @@
+package fi.hacklabmikkeli.labapi.server.doors;
+
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.inject.Inject;
+
+import org.slf4j.Logger;
+
+/**
+ * Periodically marks unacknowledged door commands timed out
+ * 
+ * @author Heikki Kurhinen
+ */
+@Singleton
+public class DoorActionTimeoutChecker {
+
+  @Inject
+  private Logger logger;
+
+  @Inject
+  private DoorController doorController;
+
+  /**
+   * Marks door actions that have not been acknowledged in time as timed out
+   */
+  @Schedule (hour = "*", minute = "*", second = "*/5", persistent = false)
+  public void check() {
+    int timedOut = doorController.timeoutPendingDoorActions();
+    if (timedOut > 0) {
+      logger.warn("{} door commands timed out without acknowledgement", timedOut);
+    }
+  }
+
+}
@@ -0,0 +1,26 @@
+package fi.hacklabmikkeli.labapi.server.doors;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * CDI event fired when door is created, updated or deleted
+ * 
+ * @author Heikki Kurhinen
+ */
+@Data
+@AllArgsConstructor
+public class DoorChangeEvent {
+
+  private DoorChangeType type;
+
+  private UUID doorId;
+
+  private String name;
+
+  private OffsetDateTime lastPing;
+
+}
@@ -0,0 +1,15 @@
+package fi.hacklabmikkeli.labapi.server.doors;
+
+/**
+ * Enumeration describing type of change made to door
+ * 
+ * @author Heikki Kurhinen
+ */
+public enum DoorChangeType {
+
+  CREATED,
+
+  UPDATED,
+
+  DELETED
+}
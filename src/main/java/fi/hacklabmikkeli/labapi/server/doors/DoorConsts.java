@@ -0,0 +1,41 @@
+package fi.hacklabmikkeli.labapi.server.doors;
+
+/**
+ * Class for door constants
+ * 
+ * @author Heikki Kurhinen
+ */
+public class DoorConsts {
+
+  public static final String DOOR_PING_FLUSH_INTERVAL_SETTING = "door-ping-flush-interval";
+
+  public static final String DOOR_PING_MAX_STALENESS_SETTING = "door-ping-max-staleness";
+
+  public static final String DOOR_OFFLINE_TIMEOUT_SETTING = "door-offline-timeout";
+
+  public static final String DOOR_EVENT_STREAM_BUFFER_SETTING = "door-event-stream-buffer";
+
+  public static final String DOOR_EVENT_STREAM_TIMEOUT_SETTING = "door-event-stream-timeout";
+
+  public static final String DOOR_ACTION_ACK_TIMEOUT_SETTING = "door-action-ack-timeout";
+
+  public static final String DOOR_ACK_DOORS_SETTING = "door-ack-doors";
+
+  public static final int DEFAULT_DOOR_PING_FLUSH_INTERVAL = 10;
+
+  public static final int DEFAULT_DOOR_PING_MAX_STALENESS = 60;
+
+  public static final int DEFAULT_DOOR_OFFLINE_TIMEOUT = 60;
+
+  public static final int DEFAULT_DOOR_EVENT_STREAM_BUFFER = 100;
+
+  public static final int DEFAULT_DOOR_EVENT_STREAM_TIMEOUT = 300;
+
+  public static final int DEFAULT_DOOR_ACTION_ACK_TIMEOUT = 10;
+
+  public static final int DOOR_LATENCY_SAMPLE_SIZE = 1000;
+
+  private DoorConsts() {
+  }
+
+}
@@ -1,17 +1,26 @@
 package fi.hacklabmikkeli.labapi.server.doors;
 
+import java.time.Duration;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
 
 import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Event;
 import javax.inject.Inject;
 
+import org.apache.commons.lang3.StringUtils;
+
 import fi.hacklabmikkeli.labapi.server.persistence.dao.DoorActionDAO;
 import fi.hacklabmikkeli.labapi.server.persistence.dao.DoorDAO;
 import fi.hacklabmikkeli.labapi.server.persistence.model.Door;
 import fi.hacklabmikkeli.labapi.server.persistence.model.DoorAction;
+import fi.hacklabmikkeli.labapi.server.persistence.model.DoorActionStatus;
 import fi.hacklabmikkeli.labapi.server.persistence.model.DoorActionType;
+import fi.hacklabmikkeli.labapi.server.settings.SystemSettingController;
 
 /**
  * Controller for door related operations
@@ -27,6 +36,21 @@ public class DoorController {
   @Inject
   private DoorActionDAO doorActionDAO;
 
+  @Inject
+  private DoorPingBuffer doorPingBuffer;
+
+  @Inject
+  private DoorPresenceRegistry doorPresenceRegistry;
+
+  @Inject
+  private SystemSettingController systemSettingController;
+
+  @Inject
+  private Event<DoorChangeEvent> doorChangeEvent;
+
+  @Inject
+  private Event<DoorActionEvent> doorActionEvent;
+
   /**
    * Creates new door
    * 
@@ -36,11 +60,16 @@ public class DoorController {
    * @return created door
    */
   public Door createDoor(String name, OffsetDateTime lastPing) {
-    return doorDAO.create(UUID.randomUUID(), name, lastPing);
+    Door door = doorDAO.create(UUID.randomUUID(), name, lastPing);
+    fireDoorChange(DoorChangeType.CREATED, door);
+    return door;
   }
 
   /**
-   * Creates door action
+   * Creates door action. 
+   * 
+   * Actions targeted to doors that acknowledge commands are pending until the door acknowledges them, 
+   * acknowledgements are not tracked for other doors
    * 
    * @param door Door that action is targetet to
    * @param type Action type
@@ -49,7 +78,25 @@ public class DoorController {
    * @return created door action
    */
   public DoorAction createDoorAction(Door door, DoorActionType type, UUID userId) {
-    return doorActionDAO.create(UUID.randomUUID(), door, type, userId);
+    DoorActionStatus status = isAcknowledgingDoor(door) ? DoorActionStatus.PENDING : null;
+    DoorAction doorAction = doorActionDAO.create(UUID.randomUUID(), door, type, userId, status);
+    doorActionEvent.fire(new DoorActionEvent(door.getId(), doorAction.getId(), doorAction.getType(), doorAction.getCreatedAt()));
+    return doorAction;
+  }
+
+  /**
+   * Returns whether door firmware acknowledges commands. 
+   * 
+   * Doors are listed in door-ack-doors setting once their firmware understands commands that carry the door action id
+   * 
+   * @param door door
+   * @return whether door acknowledges commands
+   */
+  public boolean isAcknowledgingDoor(Door door) {
+    String[] doorIds = systemSettingController.getSettingValues(DoorConsts.DOOR_ACK_DOORS_SETTING, new String[0]);
+    return Arrays.stream(doorIds)
+      .map(StringUtils::trim)
+      .anyMatch(doorId -> doorId.equals(door.getId().toString()));
   }
 
   /**
@@ -63,6 +110,17 @@ public class DoorController {
     return doorDAO.findById(id);
   }
 
+  /**
+   * Finds door action with id
+   * 
+   * @param id door action id
+   * 
+   * @return door action or null if not found
+   */
+  public DoorAction findDoorAction(UUID id) {
+    return doorActionDAO.findById(id);
+  }
+
   /**
    * Lists doors
    * 
@@ -76,16 +134,85 @@ public class DoorController {
   }
 
   /**
-   * Lists actions of door
+   * Lists actions of door, newest first
    * 
    * @param door door to list the actions from
-   * @param firstResult first result to return (optional)
+   * @param from return only actions created at or after this time (optional)
+   * @param to return only actions created before this time (optional)
+   * @param after return only actions older than this action (optional)
+   * @param before return only actions newer than this action (optional)
    * @param maxResults max number of results to return (optional)
    * 
    * @return list of door actions from door
    */
-  public List<DoorAction> listDoorActions(Door door, Long firstResult, Long maxResults) {
-    return doorActionDAO.listByDoor(door, firstResult, maxResults);
+  public List<DoorAction> listDoorActions(Door door, OffsetDateTime from, OffsetDateTime to, DoorAction after, DoorAction before, Long maxResults) {
+    return doorActionDAO.listByDoor(door, from, to, after, before, maxResults);
+  }
+
+  /**
+   * Marks pending door action acknowledged and records round trip latency. 
+   * 
+   * Status is checked by the update itself, because the given entity may be stale when the timeout sweep has just timed the action out
+   * 
+   * @param doorAction door action
+   * @param acknowledgedAt time the acknowledgement was received
+   * 
+   * @return whether action was pending
+   */
+  public boolean acknowledgeDoorAction(DoorAction doorAction, OffsetDateTime acknowledgedAt) {
+    if (doorAction.getStatus() != DoorActionStatus.PENDING) {
+      return false;
+    }
+
+    long latency = Duration.between(doorAction.getCreatedAt(), acknowledgedAt).toMillis();
+    return doorActionDAO.updatePendingToAcknowledged(doorAction, acknowledgedAt, latency) > 0;
+  }
+
+  /**
+   * Marks door actions that have not been acknowledged within timeout as timed out
+   * 
+   * @return number of timed out actions
+   */
+  public int timeoutPendingDoorActions() {
+    return doorActionDAO.updatePendingToTimedOut(OffsetDateTime.now().minusSeconds(getDoorActionAckTimeout()));
+  }
+
+  /**
+   * Returns time after which door action is not acknowledged anymore and its command must not be sent to the door
+   * 
+   * @param doorAction door action
+   * @return expiry time of the door action
+   */
+  public OffsetDateTime getDoorActionExpiresAt(DoorAction doorAction) {
+    return doorAction.getCreatedAt().plusSeconds(getDoorActionAckTimeout());
+  }
+
+  /**
+   * Returns door action acknowledgement timeout
+   * 
+   * @return timeout in seconds
+   */
+  private int getDoorActionAckTimeout() {
+    return systemSettingController.getSettingValueInteger(DoorConsts.DOOR_ACTION_ACK_TIMEOUT_SETTING, DoorConsts.DEFAULT_DOOR_ACTION_ACK_TIMEOUT);
+  }
+
+  /**
+   * Returns round trip latency percentiles of most recent acknowledged commands of door
+   * 
+   * @param door door
+   * 
+   * @return latency statistics
+   */
+  public DoorLatencyStatistics getDoorLatencyStatistics(Door door) {
+    List<Long> latencies = new ArrayList<>(doorActionDAO.listLatenciesByDoor(door, DoorConsts.DOOR_LATENCY_SAMPLE_SIZE));
+    Collections.sort(latencies);
+    long timedOut = doorActionDAO.countByDoorAndStatus(door, DoorActionStatus.TIMED_OUT);
+
+    return new DoorLatencyStatistics(door.getId(), latencies.size(), timedOut, 
+      getPercentile(latencies, 50), 
+      getPercentile(latencies, 90), 
+      getPercentile(latencies, 99), 
+      latencies.isEmpty() ? null : latencies.get(latencies.size() - 1));
   }
 
   /**
@@ -98,6 +225,7 @@ public class DoorController {
   public Door updateDoor(Door door, String name, OffsetDateTime lastPing) {
     doorDAO.updateLastPing(door, lastPing);
     doorDAO.updateName(door, name);
+    fireDoorChange(DoorChangeType.UPDATED, door);
     return door;
   }
 
@@ -118,8 +246,37 @@ public class DoorController {
    * @param door Door to delete 
    */
   public void deleteDoor(Door door) {
-    listDoorActions(door, null, null).stream().forEach(doorActionDAO::delete);
+    doorActionDAO.deleteByDoor(door);
     doorDAO.delete(door);
+    doorPingBuffer.forget(door.getId());
+    doorPresenceRegistry.forget(door.getId());
+    fireDoorChange(DoorChangeType.DELETED, door);
+  }
+
+  /**
+   * Returns nearest-rank percentile from sorted values
+   * 
+   * @param sorted sorted values
+   * @param percentile percentile
+   * @return percentile value or null if there are no values
+   */
+  private Long getPercentile(List<Long> sorted, int percentile) {
+    if (sorted.isEmpty()) {
+      return null;
+    }
+
+    int rank = (int) Math.ceil(percentile / 100d * sorted.size());
+    return sorted.get(Math.max(rank, 1) - 1);
+  }
+
+  /**
+   * Fires door change event. Observers may choose to be notified only after the transaction has been committed
+   * 
+   * @param type change type
+   * @param door changed door
+   */
+  private void fireDoorChange(DoorChangeType type, Door door) {
+    doorChangeEvent.fire(new DoorChangeEvent(type, door.getId(), door.getName(), doorPingBuffer.getLastPing(door.getId(), door.getLastPing())));
   }
 
 }
@@ -0,0 +1,143 @@
+package fi.hacklabmikkeli.labapi.server.doors;
+
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Resource;
+import javax.enterprise.concurrent.ManagedExecutorService;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.enterprise.event.TransactionPhase;
+import javax.inject.Inject;
+import javax.servlet.AsyncContext;
+
+import org.slf4j.Logger;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import fi.hacklabmikkeli.labapi.server.settings.SystemSettingController;
+
+/**
+ * Broadcasts door events into Server-Sent Events connections
+ * 
+ * @author Heikki Kurhinen
+ */
+@ApplicationScoped
+public class DoorEventBroadcaster {
+
+  @Inject
+  private Logger logger;
+
+  @Inject
+  private SystemSettingController systemSettingController;
+
+  @Resource
+  private ManagedExecutorService managedExecutorService;
+
+  private final Set<DoorEventConnection> connections = ConcurrentHashMap.newKeySet();
+
+  private final ObjectMapper objectMapper = createObjectMapper();
+
+  /**
+   * Opens new event stream connection
+   * 
+   * @param asyncContext async context of the request
+   * @return connection
+   */
+  public DoorEventConnection open(AsyncContext asyncContext) {
+    int bufferSize = systemSettingController.getSettingValueInteger(DoorConsts.DOOR_EVENT_STREAM_BUFFER_SETTING, DoorConsts.DEFAULT_DOOR_EVENT_STREAM_BUFFER);
+    DoorEventConnection connection = new DoorEventConnection(asyncContext, bufferSize, managedExecutorService);
+    connections.add(connection);
+    return connection;
+  }
+
+  /**
+   * Closes event stream connection
+   * 
+   * @param connection connection
+   */
+  public void close(DoorEventConnection connection) {
+    connections.remove(connection);
+    connection.close();
+  }
+
+  /**
+   * Broadcasts door change after the transaction has been committed
+   * 
+   * @param event event
+   */
+  public void onDoorChange(@Observes (during = TransactionPhase.AFTER_SUCCESS) DoorChangeEvent event) {
+    broadcast(String.format("door-%s", event.getType().name().toLowerCase(Locale.ROOT)), event);
+  }
+
+  /**
+   * Broadcasts new door action after the transaction has been committed
+   * 
+   * @param event event
+   */
+  public void onDoorAction(@Observes (during = TransactionPhase.AFTER_SUCCESS) DoorActionEvent event) {
+    broadcast("door-action", event);
+  }
+
+  /**
+   * Broadcasts door ping
+   * 
+   * @param event event
+   */
+  public void onDoorPing(@Observes DoorPingEvent event) {
+    broadcast("door-ping", event);
+  }
+
+  /**
+   * Broadcasts door online / offline change
+   * 
+   * @param event event
+   */
+  public void onDoorPresenceChange(@Observes DoorPresenceChangeEvent event) {
+    broadcast(event.isOnline() ? "door-online" : "door-offline", event);
+  }
+
+  /**
+   * Sends event into all connections. Connections that can not keep up are dropped
+   * 
+   * @param name event name
+   * @param data event data
+   */
+  private void broadcast(String name, Object data) {
+    if (connections.isEmpty()) {
+      return;
+    }
+
+    String frame;
+    try {
+      frame = String.format("event: %s\ndata: %s\n\n", name, objectMapper.writeValueAsString(data));
+    } catch (JsonProcessingException e) {
+      logger.error("Failed to serialize door event", e);
+      return;
+    }
+
+    for (DoorEventConnection connection : connections) {
+      if (!connection.offer(frame)) {
+        logger.warn("Dropping slow door event stream client");
+        close(connection);
+      }
+    }
+  }
+
+  /**
+   * Creates object mapper for serializing events
+   * 
+   * @return object mapper
+   */
+  private static ObjectMapper createObjectMapper() {
+    ObjectMapper result = new ObjectMapper();
+    result.registerModule(new JavaTimeModule());
+    result.configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
+    return result;
+  }
+
+}
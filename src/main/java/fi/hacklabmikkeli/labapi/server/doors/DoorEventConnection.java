@@ -0,0 +1,184 @@
+package fi.hacklabmikkeli.labapi.server.doors;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+
+/**
+ * Single Server-Sent Events client connection. 
+ * 
+ * Frames are queued into a bounded buffer and written with non-blocking output, so a slow client 
+ * never holds an executor thread. When the client stops reading the frames pile up in the buffer 
+ * and the client is disconnected once the buffer is full.
+ * 
+ * @author Heikki Kurhinen
+ */
+public class DoorEventConnection {
+
+  private final AsyncContext asyncContext;
+
+  private final BlockingQueue<String> frames;
+
+  private final Executor executor;
+
+  private final AtomicBoolean started = new AtomicBoolean();
+
+  private final AtomicBoolean draining = new AtomicBoolean();
+
+  private final AtomicBoolean awaitingWrite = new AtomicBoolean();
+
+  private final AtomicBoolean closed = new AtomicBoolean();
+
+  private ServletOutputStream outputStream;
+
+  /**
+   * Constructor
+   * 
+   * @param asyncContext async context of the request
+   * @param bufferSize maximum number of frames waiting to be written
+   * @param executor executor that writes the frames
+   */
+  public DoorEventConnection(AsyncContext asyncContext, int bufferSize, Executor executor) {
+    this.asyncContext = asyncContext;
+    this.frames = new ArrayBlockingQueue<>(bufferSize);
+    this.executor = executor;
+  }
+
+  /**
+   * Switches the response into non-blocking output. Must be called after the request has been put into async mode. 
+   * 
+   * Frames offered before the container reports the output writable are written once it does
+   * 
+   * @throws IOException when output stream can not be opened
+   */
+  public void start() throws IOException {
+    outputStream = asyncContext.getResponse().getOutputStream();
+    outputStream.setWriteListener(new ConnectionWriteListener());
+  }
+
+  /**
+   * Queues frame for sending. Closes the connection if the buffer is full
+   * 
+   * @param frame Server-Sent Events frame
+   * @return whether frame was queued
+   */
+  public boolean offer(String frame) {
+    if (closed.get()) {
+      return false;
+    }
+
+    if (!frames.offer(frame)) {
+      close();
+      return false;
+    }
+
+    scheduleDrain();
+    return true;
+  }
+
+  /**
+   * Returns whether connection has been closed
+   * 
+   * @return whether connection has been closed
+   */
+  public boolean isClosed() {
+    return closed.get();
+  }
+
+  /**
+   * Closes the connection
+   */
+  public void close() {
+    if (closed.compareAndSet(false, true)) {
+      frames.clear();
+      try {
+        asyncContext.complete();
+      } catch (IllegalStateException e) {
+        // Request has already been completed by the container
+      }
+    }
+  }
+
+  /**
+   * Schedules writing of queued frames if it is not already scheduled or waiting for the client
+   */
+  private void scheduleDrain() {
+    if (started.get() && draining.compareAndSet(false, true)) {
+      try {
+        executor.execute(this::drain);
+      } catch (RuntimeException e) {
+        draining.set(false);
+        close();
+      }
+    }
+  }
+
+  /**
+   * Writes queued frames into the response for as long as the container accepts data without blocking. 
+   * 
+   * When the container stops accepting data the drain is left pending and resumed by the container 
+   * once the client has read enough.
+   */
+  private void drain() {
+    try {
+      String frame;
+      while (!closed.get()) {
+        awaitingWrite.set(true);
+        if (!outputStream.isReady()) {
+          return;
+        }
+
+        awaitingWrite.set(false);
+
+        frame = frames.poll();
+        if (frame == null) {
+          break;
+        }
+
+        outputStream.write(frame.getBytes(StandardCharsets.UTF_8));
+      }
+
+      if (!closed.get() && outputStream.isReady()) {
+        outputStream.flush();
+      }
+    } catch (IOException | IllegalStateException e) {
+      close();
+    }
+
+    draining.set(false);
+    if (!closed.get() && !frames.isEmpty()) {
+      scheduleDrain();
+    }
+  }
+
+  /**
+   * Write listener resuming pending drains when the container can accept more data
+   */
+  private class ConnectionWriteListener implements WriteListener {
+
+    @Override
+    public void onWritePossible() throws IOException {
+      if (started.compareAndSet(false, true)) {
+        scheduleDrain();
+      } else if (awaitingWrite.compareAndSet(true, false)) {
+        drain();
+      } else {
+        scheduleDrain();
+      }
+    }
+
+    @Override
+    public void onError(Throwable t) {
+      close();
+    }
+
+  }
+
+}
@@ -0,0 +1,77 @@
+package fi.hacklabmikkeli.labapi.server.doors;
+
+import java.io.IOException;
+
+import javax.inject.Inject;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import fi.hacklabmikkeli.labapi.server.settings.SystemSettingController;
+
+/**
+ * Servlet streaming door events as Server-Sent Events. 
+ * 
+ * Streams door created / updated / deleted events, pings, online / offline changes and new door actions. 
+ * Clients are expected to reconnect when the stream times out.
+ * 
+ * @author Heikki Kurhinen
+ */
+@WebServlet (urlPatterns = "/v1/doors/events", asyncSupported = true)
+public class DoorEventStreamServlet extends HttpServlet {
+
+  private static final long serialVersionUID = -2960862337286426158L;
+
+  private static final String RETRY_FRAME = "retry: 5000\n\n";
+
+  @Inject
+  private DoorEventBroadcaster doorEventBroadcaster;
+
+  @Inject
+  private SystemSettingController systemSettingController;
+
+  @Override
+  protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+    response.setStatus(HttpServletResponse.SC_OK);
+    response.setContentType("text/event-stream");
+    response.setCharacterEncoding("UTF-8");
+    response.setHeader("Cache-Control", "no-cache");
+
+    AsyncContext asyncContext = request.startAsync();
+    asyncContext.setTimeout(systemSettingController.getSettingValueInteger(DoorConsts.DOOR_EVENT_STREAM_TIMEOUT_SETTING, DoorConsts.DEFAULT_DOOR_EVENT_STREAM_TIMEOUT) * 1000l);
+
+    DoorEventConnection connection = doorEventBroadcaster.open(asyncContext);
+    asyncContext.addListener(new AsyncListener() {
+
+      @Override
+      public void onComplete(AsyncEvent event) throws IOException {
+        doorEventBroadcaster.close(connection);
+      }
+
+      @Override
+      public void onTimeout(AsyncEvent event) throws IOException {
+        doorEventBroadcaster.close(connection);
+      }
+
+      @Override
+      public void onError(AsyncEvent event) throws IOException {
+        doorEventBroadcaster.close(connection);
+      }
+
+      @Override
+      public void onStartAsync(AsyncEvent event) throws IOException {
+        // Nothing to do when async is restarted
+      }
+
+    });
+
+    connection.offer(RETRY_FRAME);
+    connection.start();
+  }
+
+}
@@ -0,0 +1,31 @@
+package fi.hacklabmikkeli.labapi.server.doors;
+
+import java.util.UUID;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Door command round trip latency statistics
+ * 
+ * @author Heikki Kurhinen
+ */
+@Data
+@AllArgsConstructor
+public class DoorLatencyStatistics {
+
+  private UUID doorId;
+
+  private int sampleSize;
+
+  private long timedOut;
+
+  private Long p50;
+
+  private Long p90;
+
+  private Long p99;
+
+  private Long max;
+
+}
@@ -2,27 +2,49 @@ package fi.hacklabmikkeli.labapi.server.doors;
 
 import java.time.OffsetDateTime;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Event;
 import javax.inject.Inject;
-import javax.transaction.Transactional;
 
 import org.eclipse.paho.client.mqttv3.MqttMessage;
 import org.slf4j.Logger;
 
 import fi.hacklabmikkeli.labapi.server.mqtt.LabApiMqttListener;
-import fi.hacklabmikkeli.labapi.server.persistence.model.Door;
 
+/**
+ * MQTT listener for door pings. 
+ * 
+ * Pings are recorded into DoorPingBuffer and written into the database in batches by DoorPingFlusher. 
+ * Pings also keep the door online in DoorPresenceRegistry. Payload may be either binary or textual 
+ * UUID, see DoorPingDecoder. Invalid payloads are counted and ignored. 
+ * 
+ * Pings are never subscribed as a shared subscription, because the presence registry of every server 
+ * must see every ping to keep door presence and presence events correct
+ * 
+ * @author Heikki Kurhinen
+ */
 @ApplicationScoped
 public class DoorMqttListener implements LabApiMqttListener {
 
   public static final String DOOR_PING_TOPIC = "door/ping";
 
   @Inject
-  private DoorController doorController;
+  private Logger logger;
 
   @Inject
-  private Logger logger;
+  private DoorPingBuffer doorPingBuffer;
+
+  @Inject
+  private DoorPresenceRegistry doorPresenceRegistry;
+
+  @Inject
+  private Event<DoorPingEvent> doorPingEvent;
+
+  private final AtomicLong acceptedPings = new AtomicLong();
+
+  private final AtomicLong rejectedPings = new AtomicLong();
 
   @Override
   public String getTopic() {
@@ -30,16 +52,32 @@ public class DoorMqttListener implements LabApiMqttListener {
   }
 
   @Override
-  @Transactional(Transactional.TxType.REQUIRES_NEW)
+  public boolean isOrdered() {
+    return false;
+  }
+
+  @Override
   public void messageArrived(String topic, MqttMessage message) throws Exception {
-    String doorIdString = new String(message.getPayload());
-    UUID doorId = UUID.fromString(doorIdString);
-    Door door = doorController.findDoor(doorId);
-    if (door == null) {
-      logger.error("Received ping from unknown door {}", doorIdString);
+    UUID doorId = DoorPingDecoder.decode(message.getPayload());
+    if (doorId == null) {
+      rejectedPings.incrementAndGet();
+      logger.debug("Rejected ping with invalid payload of {} bytes", message.getPayload().length);
       return;
     }
 
-    doorController.updateDoorLastPing(door, OffsetDateTime.now());
+    acceptedPings.incrementAndGet();
+    OffsetDateTime pingTime = OffsetDateTime.now();
+    doorPingBuffer.recordPing(doorId, pingTime);
+    doorPresenceRegistry.recordPing(doorId, pingTime);
+    doorPingEvent.fire(new DoorPingEvent(doorId, pingTime));
+  }
+
+  /**
+   * Returns snapshot of ping counters
+   * 
+   * @return ping counters
+   */
+  public DoorPingMetrics getMetrics() {
+    return new DoorPingMetrics(acceptedPings.get(), rejectedPings.get());
   }
-}
\ No newline at end of file
+}
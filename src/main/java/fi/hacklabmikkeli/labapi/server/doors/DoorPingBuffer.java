@@ -0,0 +1,159 @@
+package fi.hacklabmikkeli.labapi.server.doors;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import fi.hacklabmikkeli.labapi.server.settings.SystemSettingController;
+
+/**
+ * In-memory buffer for door pings. 
+ * 
+ * Pings are recorded into the buffer and written into the database in batches by DoorPingFlusher. 
+ * A door is marked dirty only when its latest ping is more than maximum staleness newer than 
+ * the value stored in the database.
+ * 
+ * @author Heikki Kurhinen
+ */
+@ApplicationScoped
+public class DoorPingBuffer {
+
+  @Inject
+  private SystemSettingController systemSettingController;
+
+  private final ConcurrentMap<UUID, BufferedPing> pings = new ConcurrentHashMap<>();
+
+  /**
+   * Records ping from door
+   * 
+   * @param doorId door id
+   * @param pingTime time of the ping
+   */
+  public void recordPing(UUID doorId, OffsetDateTime pingTime) {
+    Duration maxStaleness = getMaxStaleness();
+    pings.compute(doorId, (id, existing) -> {
+      if (existing == null) {
+        return new BufferedPing(pingTime, null, true);
+      }
+      
+      if (!pingTime.isAfter(existing.getLatest())) {
+        return existing;
+      }
+      
+      OffsetDateTime persisted = existing.getPersisted();
+      boolean dirty = existing.isDirty() || persisted == null || !pingTime.isBefore(persisted.plus(maxStaleness));
+      return new BufferedPing(pingTime, persisted, dirty);
+    });
+  }
+
+  /**
+   * Returns the newer of buffered ping and the ping stored in the database
+   * 
+   * @param doorId door id
+   * @param persistedPing ping stored in the database (may be null)
+   * @return last ping or null if door has never pinged
+   */
+  public OffsetDateTime getLastPing(UUID doorId, OffsetDateTime persistedPing) {
+    BufferedPing bufferedPing = pings.get(doorId);
+    if (bufferedPing == null) {
+      return persistedPing;
+    }
+    
+    if (persistedPing == null || bufferedPing.getLatest().isAfter(persistedPing)) {
+      return bufferedPing.getLatest();
+    }
+    
+    return persistedPing;
+  }
+
+  /**
+   * Returns dirty pings and marks them as persisted
+   * 
+   * @return map of door ids and pings that should be written into the database
+   */
+  public Map<UUID, OffsetDateTime> drainDirty() {
+    Map<UUID, OffsetDateTime> result = new HashMap<>();
+    
+    for (UUID doorId : pings.keySet()) {
+      pings.computeIfPresent(doorId, (id, existing) -> {
+        if (!existing.isDirty()) {
+          return existing;
+        }
+        
+        result.put(id, existing.getLatest());
+        return new BufferedPing(existing.getLatest(), existing.getLatest(), false);
+      });
+    }
+    
+    return result;
+  }
+
+  /**
+   * Marks pings dirty again after failed flush
+   * 
+   * @param failed pings that could not be written
+   */
+  public void restoreDirty(Map<UUID, OffsetDateTime> failed) {
+    for (Entry<UUID, OffsetDateTime> entry : failed.entrySet()) {
+      pings.computeIfPresent(entry.getKey(), (id, existing) -> new BufferedPing(existing.getLatest(), null, true));
+    }
+  }
+
+  /**
+   * Removes door from the buffer
+   * 
+   * @param doorId door id
+   */
+  public void forget(UUID doorId) {
+    pings.remove(doorId);
+  }
+
+  /**
+   * Returns maximum staleness of pings stored in the database
+   * 
+   * @return maximum staleness
+   */
+  private Duration getMaxStaleness() {
+    return Duration.ofSeconds(systemSettingController.getSettingValueInteger(DoorConsts.DOOR_PING_MAX_STALENESS_SETTING, DoorConsts.DEFAULT_DOOR_PING_MAX_STALENESS));
+  }
+
+  /**
+   * Immutable buffer entry
+   */
+  private static class BufferedPing {
+
+    private final OffsetDateTime latest;
+
+    private final OffsetDateTime persisted;
+
+    private final boolean dirty;
+
+    public BufferedPing(OffsetDateTime latest, OffsetDateTime persisted, boolean dirty) {
+      this.latest = latest;
+      this.persisted = persisted;
+      this.dirty = dirty;
+    }
+
+    public OffsetDateTime getLatest() {
+      return latest;
+    }
+
+    public OffsetDateTime getPersisted() {
+      return persisted;
+    }
+
+    public boolean isDirty() {
+      return dirty;
+    }
+
+  }
+
+}
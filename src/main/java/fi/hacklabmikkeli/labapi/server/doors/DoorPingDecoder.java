@@ -0,0 +1,129 @@
+package fi.hacklabmikkeli.labapi.server.doors;
+
+import java.util.UUID;
+
+/**
+ * Decoder for door ping payloads. 
+ * 
+ * Accepts either 16 byte binary UUID (most significant byte first) or canonical 36 character 
+ * textual UUID optionally followed by line break. Payload is decoded straight from the byte array 
+ * without intermediate strings.
+ * 
+ * @author Heikki Kurhinen
+ */
+public class DoorPingDecoder {
+
+  private static final int BINARY_LENGTH = 16;
+  private static final int TEXT_LENGTH = 36;
+
+  private DoorPingDecoder() {
+  }
+
+  /**
+   * Decodes door id from ping payload
+   * 
+   * @param payload ping payload
+   * @return door id or null if payload is not valid
+   */
+  public static UUID decode(byte[] payload) {
+    if (payload == null) {
+      return null;
+    }
+
+    if (payload.length == BINARY_LENGTH) {
+      return decodeBinary(payload);
+    }
+
+    int length = payload.length;
+    while (length > TEXT_LENGTH && (payload[length - 1] == '\n' || payload[length - 1] == '\r')) {
+      length--;
+    }
+
+    if (length == TEXT_LENGTH) {
+      return decodeText(payload);
+    }
+
+    return null;
+  }
+
+  /**
+   * Decodes binary UUID
+   * 
+   * @param payload 16 byte payload
+   * @return UUID
+   */
+  private static UUID decodeBinary(byte[] payload) {
+    long mostSignificant = 0;
+    long leastSignificant = 0;
+
+    for (int i = 0; i < 8; i++) {
+      mostSignificant = (mostSignificant << 8) | (payload[i] & 0xff);
+    }
+
+    for (int i = 8; i < 16; i++) {
+      leastSignificant = (leastSignificant << 8) | (payload[i] & 0xff);
+    }
+
+    return new UUID(mostSignificant, leastSignificant);
+  }
+
+  /**
+   * Decodes canonical textual UUID (8-4-4-4-12 hex digits)
+   * 
+   * @param payload payload starting with 36 character UUID
+   * @return UUID or null if payload is not valid UUID
+   */
+  private static UUID decodeText(byte[] payload) {
+    if (payload[8] != '-' || payload[13] != '-' || payload[18] != '-' || payload[23] != '-') {
+      return null;
+    }
+
+    long mostSignificant = 0;
+    long leastSignificant = 0;
+    int digits = 0;
+
+    for (int i = 0; i < TEXT_LENGTH; i++) {
+      if (i == 8 || i == 13 || i == 18 || i == 23) {
+        continue;
+      }
+
+      int value = hexValue(payload[i]);
+      if (value < 0) {
+        return null;
+      }
+
+      if (digits < 16) {
+        mostSignificant = (mostSignificant << 4) | value;
+      } else {
+        leastSignificant = (leastSignificant << 4) | value;
+      }
+
+      digits++;
+    }
+
+    return new UUID(mostSignificant, leastSignificant);
+  }
+
+  /**
+   * Returns value of hexadecimal digit
+   * 
+   * @param digit ASCII digit
+   * @return value or -1 if byte is not hexadecimal digit
+   */
+  private static int hexValue(byte digit) {
+    if (digit >= '0' && digit <= '9') {
+      return digit - '0';
+    }
+
+    if (digit >= 'a' && digit <= 'f') {
+      return digit - 'a' + 10;
+    }
+
+    if (digit >= 'A' && digit <= 'F') {
+      return digit - 'A' + 10;
+    }
+
+    return -1;
+  }
+
+}
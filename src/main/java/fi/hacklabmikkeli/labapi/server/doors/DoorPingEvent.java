@@ -0,0 +1,22 @@
+package fi.hacklabmikkeli.labapi.server.doors;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * CDI event fired when ping is received from door
+ * 
+ * @author Heikki Kurhinen
+ */
+@Data
+@AllArgsConstructor
+public class DoorPingEvent {
+
+  private UUID doorId;
+
+  private OffsetDateTime lastPing;
+
+}
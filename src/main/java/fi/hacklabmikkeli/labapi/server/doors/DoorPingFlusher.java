@@ -0,0 +1,157 @@
+package fi.hacklabmikkeli.labapi.server.doors;
+
+import java.nio.ByteBuffer;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.ejb.Timeout;
+import javax.ejb.TimerConfig;
+import javax.ejb.TimerService;
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceContext;
+import javax.persistence.PersistenceUnit;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+import org.hibernate.HibernateException;
+import org.hibernate.Session;
+import org.slf4j.Logger;
+
+import fi.hacklabmikkeli.labapi.server.persistence.model.Door;
+import fi.hacklabmikkeli.labapi.server.settings.SystemSettingController;
+
+/**
+ * Periodically writes buffered door pings into the database with a single batched update. 
+ * 
+ * Cached doors are evicted after the update has been committed. If the transaction rolls back 
+ * the pings are returned into the buffer and written on the next flush.
+ * 
+ * @author Heikki Kurhinen
+ */
+@Singleton
+@Startup
+public class DoorPingFlusher {
+
+  private static final String UPDATE_LAST_PING_SQL = "UPDATE door SET lastping = ?, modifiedat = ? WHERE id = ?";
+
+  @Inject
+  private Logger logger;
+
+  @Inject
+  private DoorPingBuffer doorPingBuffer;
+
+  @Inject
+  private DoorPresenceRegistry doorPresenceRegistry;
+
+  @Inject
+  private SystemSettingController systemSettingController;
+
+  @Resource
+  private TimerService timerService;
+
+  @Resource
+  private TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+
+  @PersistenceContext
+  private EntityManager entityManager;
+
+  @PersistenceUnit
+  private EntityManagerFactory entityManagerFactory;
+
+  /**
+   * Starts the flush timer
+   */
+  @PostConstruct
+  public void init() {
+    long interval = systemSettingController.getSettingValueInteger(DoorConsts.DOOR_PING_FLUSH_INTERVAL_SETTING, DoorConsts.DEFAULT_DOOR_PING_FLUSH_INTERVAL) * 1000l;
+    timerService.createIntervalTimer(interval, interval, new TimerConfig(null, false));
+  }
+
+  /**
+   * Writes dirty pings into the database
+   */
+  @Timeout
+  public void flush() {
+    Map<UUID, OffsetDateTime> dirty = doorPingBuffer.drainDirty();
+    if (dirty.isEmpty()) {
+      return;
+    }
+
+    List<UUID> doorIds = new ArrayList<>(dirty.keySet());
+    Timestamp now = Timestamp.from(OffsetDateTime.now().toInstant());
+
+    try {
+      entityManager.unwrap(Session.class).doWork(connection -> {
+        try (PreparedStatement statement = connection.prepareStatement(UPDATE_LAST_PING_SQL)) {
+          for (UUID doorId : doorIds) {
+            statement.setTimestamp(1, Timestamp.from(dirty.get(doorId).toInstant()));
+            statement.setTimestamp(2, now);
+            statement.setBytes(3, toBytes(doorId));
+            statement.addBatch();
+          }
+
+          int[] results = statement.executeBatch();
+          for (int i = 0; i < results.length; i++) {
+            if (results[i] == 0) {
+              logger.error("Received ping from unknown door {}", doorIds.get(i));
+              doorPingBuffer.forget(doorIds.get(i));
+              doorPresenceRegistry.forget(doorIds.get(i));
+            }
+          }
+        }
+      });
+    } catch (HibernateException e) {
+      logger.error("Error writing door pings", e);
+      doorPingBuffer.restoreDirty(dirty);
+      return;
+    }
+
+    transactionSynchronizationRegistry.registerInterposedSynchronization(new Synchronization() {
+
+      @Override
+      public void beforeCompletion() {
+        // Nothing to do before completion
+      }
+
+      @Override
+      public void afterCompletion(int status) {
+        if (status != Status.STATUS_COMMITTED) {
+          logger.error("Door ping flush was rolled back");
+          doorPingBuffer.restoreDirty(dirty);
+          return;
+        }
+
+        for (UUID doorId : doorIds) {
+          entityManagerFactory.getCache().evict(Door.class, doorId);
+        }
+      }
+
+    });
+  }
+
+  /**
+   * Converts UUID into binary form used in the database
+   * 
+   * @param uuid uuid
+   * @return uuid as 16 bytes
+   */
+  private byte[] toBytes(UUID uuid) {
+    return ByteBuffer.allocate(16)
+      .putLong(uuid.getMostSignificantBits())
+      .putLong(uuid.getLeastSignificantBits())
+      .array();
+  }
+
+}
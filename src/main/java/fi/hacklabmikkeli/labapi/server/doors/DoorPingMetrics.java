@@ -0,0 +1,19 @@
+package fi.hacklabmikkeli.labapi.server.doors;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Snapshot of door ping counters
+ * 
+ * @author Heikki Kurhinen
+ */
+@Data
+@AllArgsConstructor
+public class DoorPingMetrics {
+
+  private long accepted;
+
+  private long rejected;
+
+}
@@ -0,0 +1,24 @@
+package fi.hacklabmikkeli.labapi.server.doors;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * CDI event fired when door goes online or offline
+ * 
+ * @author Heikki Kurhinen
+ */
+@Data
+@AllArgsConstructor
+public class DoorPresenceChangeEvent {
+
+  private UUID doorId;
+
+  private boolean online;
+
+  private OffsetDateTime lastPing;
+
+}
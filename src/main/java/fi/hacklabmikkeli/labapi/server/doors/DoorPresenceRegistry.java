@@ -0,0 +1,191 @@
+package fi.hacklabmikkeli.labapi.server.doors;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Event;
+import javax.inject.Inject;
+
+import fi.hacklabmikkeli.labapi.server.settings.SystemSettingController;
+
+/**
+ * In-memory registry of door presence. 
+ * 
+ * Doors are marked online when they ping and offline when no ping has been received within the 
+ * offline timeout. Expiry is tracked with a hashed timing wheel with one second ticks, so a tick 
+ * only inspects doors that are due in the current slot. Online / offline transitions are fired 
+ * as DoorPresenceChangeEvent CDI events.
+ * 
+ * @author Heikki Kurhinen
+ */
+@ApplicationScoped
+public class DoorPresenceRegistry {
+
+  private static final int WHEEL_SIZE = 512;
+
+  @Inject
+  private SystemSettingController systemSettingController;
+
+  @Inject
+  private Event<DoorPresenceChangeEvent> doorPresenceChangeEvent;
+
+  private final List<Set<UUID>> wheel = createWheel();
+
+  private final Map<UUID, Presence> presences = new HashMap<>();
+
+  private long currentTick = currentSecond();
+
+  /**
+   * Records ping from door
+   * 
+   * @param doorId door id
+   * @param pingTime time of the ping
+   */
+  public void recordPing(UUID doorId, OffsetDateTime pingTime) {
+    long timeout = getOfflineTimeout();
+    boolean cameOnline;
+
+    synchronized (this) {
+      Presence presence = presences.get(doorId);
+      cameOnline = presence == null || !presence.online;
+      if (presence == null) {
+        presence = new Presence();
+        presences.put(doorId, presence);
+      } else if (presence.online) {
+        wheel.get(slot(presence.expiryTick)).remove(doorId);
+      }
+
+      presence.online = true;
+      presence.lastPing = pingTime;
+      presence.expiryTick = currentTick + timeout;
+      wheel.get(slot(presence.expiryTick)).add(doorId);
+    }
+
+    if (cameOnline) {
+      doorPresenceChangeEvent.fire(new DoorPresenceChangeEvent(doorId, true, pingTime));
+    }
+  }
+
+  /**
+   * Returns whether door is online. 
+   * 
+   * Door is online if the registry considers it online or if the last ping stored in the database is fresh. 
+   * Stored ping covers doors the registry has not seen since startup and pings received by other servers
+   * 
+   * @param doorId door id
+   * @param lastPing last known ping of the door (may be null)
+   * @return whether door is online
+   */
+  public boolean isOnline(UUID doorId, OffsetDateTime lastPing) {
+    synchronized (this) {
+      Presence presence = presences.get(doorId);
+      if (presence != null && presence.online) {
+        return true;
+      }
+    }
+
+    return lastPing != null && lastPing.isAfter(OffsetDateTime.now().minusSeconds(getOfflineTimeout()));
+  }
+
+  /**
+   * Removes door from the registry
+   * 
+   * @param doorId door id
+   */
+  public synchronized void forget(UUID doorId) {
+    Presence presence = presences.remove(doorId);
+    if (presence != null && presence.online) {
+      wheel.get(slot(presence.expiryTick)).remove(doorId);
+    }
+  }
+
+  /**
+   * Advances the timing wheel to current time and marks expired doors offline
+   */
+  public void tick() {
+    List<DoorPresenceChangeEvent> events = new ArrayList<>();
+
+    synchronized (this) {
+      long now = currentSecond();
+      long from = Math.max(currentTick + 1, now - WHEEL_SIZE + 1);
+
+      for (long tick = from; tick <= now; tick++) {
+        expireSlot(tick, events);
+      }
+
+      currentTick = Math.max(currentTick, now);
+    }
+
+    events.forEach(doorPresenceChangeEvent::fire);
+  }
+
+  /**
+   * Marks doors that expire at given tick offline. Doors scheduled to later rounds of the wheel are left in place
+   * 
+   * @param tick tick
+   * @param events list where offline events are collected
+   */
+  private void expireSlot(long tick, List<DoorPresenceChangeEvent> events) {
+    Iterator<UUID> iterator = wheel.get(slot(tick)).iterator();
+    while (iterator.hasNext()) {
+      UUID doorId = iterator.next();
+      Presence presence = presences.get(doorId);
+      if (presence == null || presence.expiryTick <= tick) {
+        iterator.remove();
+        if (presence != null) {
+          presence.online = false;
+          events.add(new DoorPresenceChangeEvent(doorId, false, presence.lastPing));
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns offline timeout in seconds
+   * 
+   * @return offline timeout in seconds
+   */
+  private long getOfflineTimeout() {
+    return systemSettingController.getSettingValueInteger(DoorConsts.DOOR_OFFLINE_TIMEOUT_SETTING, DoorConsts.DEFAULT_DOOR_OFFLINE_TIMEOUT);
+  }
+
+  private int slot(long tick) {
+    return (int) (tick % WHEEL_SIZE);
+  }
+
+  private static long currentSecond() {
+    return Instant.now().getEpochSecond();
+  }
+
+  private static List<Set<UUID>> createWheel() {
+    List<Set<UUID>> result = new ArrayList<>(WHEEL_SIZE);
+    for (int i = 0; i < WHEEL_SIZE; i++) {
+      result.add(new HashSet<>());
+    }
+
+    return result;
+  }
+
+  /**
+   * Presence state of single door
+   */
+  private static class Presence {
+
+    private boolean online;
+
+    private long expiryTick;
+
+    private OffsetDateTime lastPing;
+
+  }
+
+}
@@ -0,0 +1,29 @@
+package fi.hacklabmikkeli.labapi.server.doors;
+
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.inject.Inject;
+
+/**
+ * Advances door presence timing wheel once per second
+ * 
+ * @author Heikki Kurhinen
+ */
+@Singleton
+public class DoorPresenceTicker {
+
+  @Inject
+  private DoorPresenceRegistry doorPresenceRegistry;
+
+  /**
+   * Advances the timing wheel
+   */
+  @Schedule (hour = "*", minute = "*", second = "*", persistent = false)
+  @TransactionAttribute (TransactionAttributeType.NOT_SUPPORTED)
+  public void tick() {
+    doorPresenceRegistry.tick();
+  }
+
+}
@@ -1,11 +1,18 @@
 package fi.hacklabmikkeli.labapi.server.keycloak;
 
 import java.util.Arrays;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
+import javax.annotation.PreDestroy;
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
+import javax.ws.rs.WebApplicationException;
 
+import org.apache.commons.lang3.StringUtils;
+import org.jboss.resteasy.client.jaxrs.ResteasyClientBuilder;
 import org.keycloak.OAuth2Constants;
 import org.keycloak.admin.client.Keycloak;
 import org.keycloak.admin.client.KeycloakBuilder;
@@ -25,10 +32,22 @@ public class KeycloakAdminController {
   private static final String KEYCLOAK_ADMIN_CLIENT_ID_SETTING = "keycloak-admin-client-id";
   private static final String KEYCLOAK_ADMIN_CLIENT_SECRET_SETTING = "keycloak-admin-client-secret";
   private static final String KEYCLOAK_ADMIN_SERVER_URL_SETTING = "keycloak-admin-server-url";
+  private static final String KEYCLOAK_ADMIN_CONNECTION_POOL_SIZE_SETTING = "keycloak-admin-connection-pool-size";
+  private static final int DEFAULT_KEYCLOAK_ADMIN_CONNECTION_POOL_SIZE = 10;
+  private static final String KEYCLOAK_ADMIN_ROLE_CACHE_TTL_SETTING = "keycloak-admin-role-cache-ttl";
+  private static final int DEFAULT_KEYCLOAK_ADMIN_ROLE_CACHE_TTL = 300;
 
   @Inject
   private SystemSettingController systemSettingController;
 
+  private Keycloak client;
+
+  private String clientRealm;
+
+  private String clientSettings;
+
+  private final Map<String, CachedRole> realmRoles = new ConcurrentHashMap<>();
+
   /**
    * Adds realm role to keycloak user
    * 
@@ -36,12 +55,15 @@ public class KeycloakAdminController {
    * @param roleName name of the role
    */
   public void addRealmRole(UUID userId, String roleName) {
-    Keycloak client = getClient();
-    String realm = systemSettingController.getSettingValue(KEYCLOAK_ADMIN_REALM_SETTING);
-    RealmResource realmResource = client.realm(realm);
+    RealmResource realmResource = getRealmResource();
     UsersResource userRessource = realmResource.users();
-    RoleRepresentation realmRole = realmResource.roles().get(roleName).toRepresentation();
-    userRessource.get(userId.toString()).roles().realmLevel().add(Arrays.asList(realmRole));
+    RoleRepresentation realmRole = getRealmRole(realmResource, roleName);
+    try {
+      userRessource.get(userId.toString()).roles().realmLevel().add(Arrays.asList(realmRole));
+    } catch (WebApplicationException e) {
+      realmRoles.remove(roleName);
+      throw e;
+    }
   }
 
   /**
@@ -51,23 +73,133 @@ public class KeycloakAdminController {
    * @param roleName name of the role
    */
   public void removeRealmRole(UUID userId, String roleName) {
-    Keycloak client = getClient();
-    String realm = systemSettingController.getSettingValue(KEYCLOAK_ADMIN_REALM_SETTING);
-    RealmResource realmResource = client.realm(realm);
+    RealmResource realmResource = getRealmResource();
     UsersResource userRessource = realmResource.users();
-    RoleRepresentation realmRole = realmResource.roles().get(roleName).toRepresentation();
-    userRessource.get(userId.toString()).roles().realmLevel().remove(Arrays.asList(realmRole));
+    RoleRepresentation realmRole = getRealmRole(realmResource, roleName);
+    try {
+      userRessource.get(userId.toString()).roles().realmLevel().remove(Arrays.asList(realmRole));
+    } catch (WebApplicationException e) {
+      realmRoles.remove(roleName);
+      throw e;
+    }
   }
+
   /**
-   * Constructs keycloak admin client
+   * Invalidates cached realm role representations
    */
-  private Keycloak getClient() {
-    return KeycloakBuilder.builder()
-      .serverUrl(systemSettingController.getSettingValue(KEYCLOAK_ADMIN_SERVER_URL_SETTING))
-      .realm(systemSettingController.getSettingValue(KEYCLOAK_ADMIN_REALM_SETTING))
-      .grantType(OAuth2Constants.CLIENT_CREDENTIALS)
-      .clientId(systemSettingController.getSettingValue(KEYCLOAK_ADMIN_CLIENT_ID_SETTING))
-      .clientSecret(systemSettingController.getSettingValue(KEYCLOAK_ADMIN_CLIENT_SECRET_SETTING)).build();
+  public void invalidateRealmRoles() {
+    realmRoles.clear();
+  }
+
+  /**
+   * Closes shared admin client on application shutdown
+   */
+  @PreDestroy
+  public synchronized void destroy() {
+    closeClient();
+  }
+
+  /**
+   * Returns realm role representation. 
+   * 
+   * Representations are cached for keycloak-admin-role-cache-ttl seconds. Cached role is dropped 
+   * when a role mapping call using it fails, so a role that has been recreated in Keycloak is fetched again
+   * 
+   * @param realmResource realm resource
+   * @param roleName name of the role
+   * @return role representation
+   */
+  private RoleRepresentation getRealmRole(RealmResource realmResource, String roleName) {
+    long now = System.currentTimeMillis();
+    CachedRole cachedRole = realmRoles.get(roleName);
+    if (cachedRole != null && cachedRole.getExpiresAt() > now) {
+      return cachedRole.getRepresentation();
+    }
+
+    RoleRepresentation representation = realmResource.roles().get(roleName).toRepresentation();
+    long ttl = TimeUnit.SECONDS.toMillis(systemSettingController.getSettingValueInteger(KEYCLOAK_ADMIN_ROLE_CACHE_TTL_SETTING, DEFAULT_KEYCLOAK_ADMIN_ROLE_CACHE_TTL));
+    realmRoles.put(roleName, new CachedRole(representation, now + ttl));
+    return representation;
+  }
+
+  /**
+   * Returns admin realm resource of the shared admin client
+   * 
+   * @return realm resource
+   */
+  private synchronized RealmResource getRealmResource() {
+    return getClient().realm(clientRealm);
+  }
+
+  /**
+   * Returns shared keycloak admin client. 
+   * 
+   * Client keeps a pool of connections and caches the access token until it expires, so it is 
+   * constructed again only when keycloak admin settings change
+   */
+  private synchronized Keycloak getClient() {
+    String serverUrl = systemSettingController.getSettingValue(KEYCLOAK_ADMIN_SERVER_URL_SETTING);
+    String realm = systemSettingController.getSettingValue(KEYCLOAK_ADMIN_REALM_SETTING);
+    String clientId = systemSettingController.getSettingValue(KEYCLOAK_ADMIN_CLIENT_ID_SETTING);
+    String clientSecret = systemSettingController.getSettingValue(KEYCLOAK_ADMIN_CLIENT_SECRET_SETTING);
+    int connectionPoolSize = systemSettingController.getSettingValueInteger(KEYCLOAK_ADMIN_CONNECTION_POOL_SIZE_SETTING, DEFAULT_KEYCLOAK_ADMIN_CONNECTION_POOL_SIZE);
+    String settings = StringUtils.join(new Object[] { serverUrl, realm, clientId, clientSecret, connectionPoolSize }, '\n');
+
+    if (client == null || !StringUtils.equals(settings, clientSettings)) {
+      closeClient();
+
+      client = KeycloakBuilder.builder()
+        .serverUrl(serverUrl)
+        .realm(realm)
+        .grantType(OAuth2Constants.CLIENT_CREDENTIALS)
+        .clientId(clientId)
+        .clientSecret(clientSecret)
+        .resteasyClient(new ResteasyClientBuilder().connectionPoolSize(connectionPoolSize).build())
+        .build();
+
+      clientRealm = realm;
+      clientSettings = settings;
+    }
+
+    return client;
+  }
+
+  /**
+   * Closes shared admin client and its connections
+   */
+  private void closeClient() {
+    if (client != null) {
+      client.close();
+      client = null;
+      clientRealm = null;
+      clientSettings = null;
+    }
+
+    realmRoles.clear();
+  }
+
+  /**
+   * Cached realm role representation
+   */
+  private static class CachedRole {
+
+    private final RoleRepresentation representation;
+
+    private final long expiresAt;
+
+    public CachedRole(RoleRepresentation representation, long expiresAt) {
+      this.representation = representation;
+      this.expiresAt = expiresAt;
+    }
+
+    public RoleRepresentation getRepresentation() {
+      return representation;
+    }
+
+    public long getExpiresAt() {
+      return expiresAt;
+    }
+
   }
 
-}
\ No newline at end of file
+}
@@ -1,6 +1,7 @@
 package fi.hacklabmikkeli.labapi.server.members;
 
 import java.time.OffsetDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -75,6 +76,44 @@ public class MemberController {
     return memberDAO.listByStatus(status, firstResult, maxResults);
   }
 
+  /**
+   * Searches members, newest first
+   * 
+   * @param statuses return only members with one of these statuses (optional)
+   * @param createdFrom return only members created at or after this time (optional)
+   * @param createdTo return only members created before this time (optional)
+   * @param approvedFrom return only members approved at or after this time (optional)
+   * @param approvedTo return only members approved before this time (optional)
+   * @param hasStripeCustomer return only members with or without stripe customer (optional)
+   * @param after return only members created before this member (optional)
+   * @param before return only members created after this member (optional)
+   * @param maxResults max number of results to return (optional)
+   * 
+   * @return list of members
+   */
+  @SuppressWarnings ("squid:S00107")
+  public List<Member> searchMembers(Collection<MemberStatus> statuses, OffsetDateTime createdFrom, OffsetDateTime createdTo, OffsetDateTime approvedFrom, 
+      OffsetDateTime approvedTo, Boolean hasStripeCustomer, Member after, Member before, Long maxResults) {
+    return memberDAO.search(statuses, createdFrom, createdTo, approvedFrom, approvedTo, hasStripeCustomer, after, before, maxResults);
+  }
+
+  /**
+   * Counts members matching search filters
+   * 
+   * @param statuses count only members with one of these statuses (optional)
+   * @param createdFrom count only members created at or after this time (optional)
+   * @param createdTo count only members created before this time (optional)
+   * @param approvedFrom count only members approved at or after this time (optional)
+   * @param approvedTo count only members approved before this time (optional)
+   * @param hasStripeCustomer count only members with or without stripe customer (optional)
+   * 
+   * @return count of members
+   */
+  public Long countSearchMembers(Collection<MemberStatus> statuses, OffsetDateTime createdFrom, OffsetDateTime createdTo, OffsetDateTime approvedFrom, 
+      OffsetDateTime approvedTo, Boolean hasStripeCustomer) {
+    return memberDAO.countSearch(statuses, createdFrom, createdTo, approvedFrom, approvedTo, hasStripeCustomer);
+  }
+
   /**
    * Updates member
    * 
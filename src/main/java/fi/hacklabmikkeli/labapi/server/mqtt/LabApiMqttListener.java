@@ -14,4 +14,22 @@ public interface LabApiMqttListener extends IMqttMessageListener {
    */
   public String getTopic();
 
-}
\ No newline at end of file
+  /**
+   * Returns whether messages of a single topic must be handled in the order they arrived. 
+   * 
+   * Unordered messages may be handled concurrently
+   */
+  public default boolean isOrdered() {
+    return true;
+  }
+
+  /**
+   * Returns whether topic may be subscribed as a shared subscription. 
+   * 
+   * Messages of shared subscriptions are delivered to only one server of the cluster
+   */
+  public default boolean isShared() {
+    return false;
+  }
+
+}
@@ -0,0 +1,17 @@
+package fi.hacklabmikkeli.labapi.server.mqtt;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * CDI event fired when MQTT client has connected or reconnected to the broker
+ * 
+ * @author Heikki Kurhinen
+ */
+@Data
+@AllArgsConstructor
+public class MqttConnectedEvent {
+
+  private boolean reconnect;
+
+}
@@ -4,20 +4,29 @@ import java.util.UUID;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
 import javax.ejb.Singleton;
 import javax.ejb.Startup;
+import javax.enterprise.concurrent.ManagedExecutorService;
 import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Event;
 import javax.enterprise.inject.Any;
 import javax.enterprise.inject.Instance;
 import javax.inject.Inject;
 
+import org.apache.commons.lang3.StringUtils;
 import org.eclipse.paho.client.mqttv3.IMqttClient;
+import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
+import org.eclipse.paho.client.mqttv3.IMqttMessageListener;
+import org.eclipse.paho.client.mqttv3.MqttCallbackExtended;
 import org.eclipse.paho.client.mqttv3.MqttClient;
 import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
 import org.eclipse.paho.client.mqttv3.MqttException;
 import org.eclipse.paho.client.mqttv3.MqttMessage;
 import org.slf4j.Logger;
 
+import fi.hacklabmikkeli.labapi.server.settings.SystemSettingController;
+
 /**
  * Controller for mqtt related operations
  * 
@@ -31,34 +40,55 @@ public class MqttController {
   public static final String BROKER_HOST = "localhost";
   public static final Integer BROKER_PORT = 1883;
 
+  private static final String MQTT_BROKER_HOST_SETTING = "mqtt-broker-host";
+  private static final String MQTT_BROKER_PORT_SETTING = "mqtt-broker-port";
+  private static final String MQTT_SHARED_SUBSCRIPTION_GROUP_SETTING = "mqtt-shared-subscription-group";
+
   @Inject
   private Logger logger;
 
+  @Inject
+  private SystemSettingController systemSettingController;
+
+  @Resource
+  private ManagedExecutorService managedExecutorService;
+
   @Inject
   @Any
   private Instance<LabApiMqttListener> labApiMqttListeners;
 
+  @Inject
+  private MqttDispatcher mqttDispatcher;
+
+  @Inject
+  private Event<MqttConnectedEvent> mqttConnectedEvent;
+
   private IMqttClient client;
 
+  private MqttTopicRouter topicRouter;
+
   /**
    * Initializes mqtt client and starts listening to topics
    */
   @PostConstruct
   public void init() {
+    String brokerHost = systemSettingController.getSettingValue(MQTT_BROKER_HOST_SETTING, BROKER_HOST);
+    Integer brokerPort = systemSettingController.getSettingValueInteger(MQTT_BROKER_PORT_SETTING, BROKER_PORT);
+    String sharedSubscriptionGroup = StringUtils.trimToNull(systemSettingController.getSettingValue(MQTT_SHARED_SUBSCRIPTION_GROUP_SETTING));
+
+    MqttTopicRouter router = new MqttTopicRouter(sharedSubscriptionGroup);
+    labApiMqttListeners.forEach(listener -> router.addListener(listener, mqttDispatcher.wrap(listener)));
+    topicRouter = router;
+
     try {
-      client = new MqttClient(String.format("tcp://%s:%d", BROKER_HOST, BROKER_PORT), UUID.randomUUID().toString());
+      client = new MqttClient(String.format("tcp://%s:%d", brokerHost, brokerPort), UUID.randomUUID().toString());
       MqttConnectOptions options = new MqttConnectOptions();
       options.setAutomaticReconnect(true);
       options.setCleanSession(true);
       options.setConnectionTimeout(10);
+      client.setCallback(new ConnectionCallback());
       client.connect(options);
-      labApiMqttListeners.forEach(listener -> {
-        try {
-          client.subscribe(listener.getTopic(), listener);
-        } catch (MqttException e) {
-          logger.error("Error subsribing to topic", e);
-        }
-      });
+      subscribe();
     } catch (MqttException e) {
       logger.error("Error connecting to MQTT broker", e);
     }
@@ -78,27 +108,115 @@ public class MqttController {
     }
   }
 
+  /**
+   * Returns whether client is connected to the broker
+   * 
+   * @return whether client is connected to the broker
+   */
+  public boolean isConnected() {
+    return client != null && client.isConnected();
+  }
+
+  /**
+   * Publishes message to mqtt broker with QoS 0
+   * 
+   * @param topic Topic to publish message into
+   * @param message Message to publish
+   * @return whether message was published
+   */
+  public boolean publishMessage(String topic, String message) {
+    return publishMessage(topic, message, 0);
+  }
+
   /**
    * Publishes message to mqtt broker
    * 
    * @param topic Topic to publish message into
    * @param message Message to publish
+   * @param qos MQTT quality of service
+   * @return whether message was published
    */
-  public void publishMessage(String topic, String message) {
-    if (!client.isConnected()) {
+  public boolean publishMessage(String topic, String message, int qos) {
+    if (!isConnected()) {
       logger.error("Cannot send message because mqtt client is not connected");
-      return;
+      return false;
     }
 
     MqttMessage mqttMessage = new MqttMessage(message.getBytes());
-    mqttMessage.setQos(0);
+    mqttMessage.setQos(qos);
     mqttMessage.setRetained(false);
     try {
       client.publish(topic, mqttMessage);
+      return true;
     } catch (MqttException e) {
       logger.error("Error sending mqtt message", e);
     }
+
+    return false;
   }
 
+  /**
+   * Subscribes to topics of all listeners. 
+   * 
+   * Listeners are subscribed without per subscription callbacks because broker delivers messages 
+   * of shared subscriptions with the original topic name, which would not match the $share filter
+   */
+  private void subscribe() {
+    topicRouter.getSubscriptionTopics().forEach(topicFilter -> {
+      try {
+        client.subscribe(topicFilter);
+      } catch (MqttException e) {
+        logger.error("Error subsribing to topic {}", topicFilter, e);
+      }
+    });
+  }
+
+  /**
+   * Delivers message to listeners with matching topic
+   * 
+   * @param topic topic the message arrived to
+   * @param message message
+   */
+  private void deliverMessage(String topic, MqttMessage message) {
+    for (IMqttMessageListener listener : topicRouter.route(topic)) {
+      try {
+        listener.messageArrived(topic, message);
+      } catch (Exception e) {
+        logger.error("Error handling message from topic {}", topic, e);
+      }
+    }
+  }
+
+  /**
+   * Callback notifying rest of the application about (re)connects
+   */
+  private class ConnectionCallback implements MqttCallbackExtended {
+
+    @Override
+    public void connectComplete(boolean reconnect, String serverURI) {
+      if (reconnect) {
+        // Clean session drops subscriptions, so they need to be restored after automatic reconnect
+        managedExecutorService.execute(MqttController.this::subscribe);
+      }
+
+      mqttConnectedEvent.fire(new MqttConnectedEvent(reconnect));
+    }
+
+    @Override
+    public void connectionLost(Throwable cause) {
+      logger.warn("Lost connection to MQTT broker", cause);
+    }
+
+    @Override
+    public void messageArrived(String topic, MqttMessage message) {
+      deliverMessage(topic, message);
+    }
+
+    @Override
+    public void deliveryComplete(IMqttDeliveryToken token) {
+      // Delivery is tracked by the outbox
+    }
+
+  }
 
 }
\ No newline at end of file
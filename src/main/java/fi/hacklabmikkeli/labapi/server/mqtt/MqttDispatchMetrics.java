@@ -0,0 +1,29 @@
+package fi.hacklabmikkeli.labapi.server.mqtt;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Snapshot of MQTT dispatcher metrics
+ * 
+ * @author Heikki Kurhinen
+ */
+@Data
+@AllArgsConstructor
+public class MqttDispatchMetrics {
+
+  private int queueDepth;
+
+  private int capacity;
+
+  private long processed;
+
+  private long failed;
+
+  private long dropped;
+
+  private double averageProcessingMillis;
+
+  private double maxProcessingMillis;
+
+}
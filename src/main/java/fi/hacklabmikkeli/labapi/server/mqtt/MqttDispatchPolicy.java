@@ -0,0 +1,13 @@
+package fi.hacklabmikkeli.labapi.server.mqtt;
+
+/**
+ * Enumeration describing how MQTT dispatcher behaves when its queue is full
+ * 
+ * @author Heikki Kurhinen
+ */
+public enum MqttDispatchPolicy {
+
+  BLOCK,
+
+  DROP
+}
@@ -0,0 +1,233 @@
+package fi.hacklabmikkeli.labapi.server.mqtt;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.enterprise.concurrent.ManagedExecutorService;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.apache.commons.lang3.EnumUtils;
+import org.eclipse.paho.client.mqttv3.IMqttMessageListener;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.slf4j.Logger;
+
+import fi.hacklabmikkeli.labapi.server.settings.SystemSettingController;
+
+/**
+ * Dispatches MQTT messages from the Paho callback thread into a bounded worker pool. 
+ * 
+ * Messages for ordered listeners are handled one at a time per topic in a fixed set of lanes 
+ * selected by topic hash, messages for unordered listeners are handled concurrently. When the queue is full dispatcher either blocks the callback 
+ * thread or drops the message depending on the configured policy.
+ * 
+ * @author Heikki Kurhinen
+ */
+@ApplicationScoped
+public class MqttDispatcher {
+
+  private static final String MQTT_DISPATCH_CAPACITY_SETTING = "mqtt-dispatch-capacity";
+  private static final String MQTT_DISPATCH_POLICY_SETTING = "mqtt-dispatch-policy";
+  private static final String MQTT_DISPATCH_LANES_SETTING = "mqtt-dispatch-lanes";
+  private static final int DEFAULT_MQTT_DISPATCH_CAPACITY = 1000;
+  private static final int DEFAULT_MQTT_DISPATCH_LANES = 16;
+
+  @Inject
+  private Logger logger;
+
+  @Inject
+  private SystemSettingController systemSettingController;
+
+  @Resource
+  private ManagedExecutorService managedExecutorService;
+
+  private final AtomicLong processed = new AtomicLong();
+
+  private final AtomicLong failed = new AtomicLong();
+
+  private final AtomicLong dropped = new AtomicLong();
+
+  private final AtomicLong totalProcessingNanos = new AtomicLong();
+
+  private final AtomicLong maxProcessingNanos = new AtomicLong();
+
+  private int capacity;
+
+  private MqttDispatchPolicy policy;
+
+  private Semaphore permits;
+
+  private TopicLane[] topicLanes;
+
+  /**
+   * Reads dispatcher configuration
+   */
+  @PostConstruct
+  public void init() {
+    capacity = systemSettingController.getSettingValueInteger(MQTT_DISPATCH_CAPACITY_SETTING, DEFAULT_MQTT_DISPATCH_CAPACITY);
+    policy = EnumUtils.getEnum(MqttDispatchPolicy.class, systemSettingController.getSettingValue(MQTT_DISPATCH_POLICY_SETTING));
+    if (policy == null) {
+      policy = MqttDispatchPolicy.BLOCK;
+    }
+
+    permits = new Semaphore(capacity);
+
+    int laneCount = Math.max(1, systemSettingController.getSettingValueInteger(MQTT_DISPATCH_LANES_SETTING, DEFAULT_MQTT_DISPATCH_LANES));
+    topicLanes = new TopicLane[laneCount];
+    for (int i = 0; i < laneCount; i++) {
+      topicLanes[i] = new TopicLane();
+    }
+  }
+
+  /**
+   * Wraps listener into Paho listener that dispatches messages through the worker pool
+   * 
+   * @param listener listener
+   * @return Paho listener
+   */
+  public IMqttMessageListener wrap(LabApiMqttListener listener) {
+    return (topic, message) -> dispatch(listener, topic, message);
+  }
+
+  /**
+   * Returns snapshot of dispatcher metrics
+   * 
+   * @return dispatcher metrics
+   */
+  public MqttDispatchMetrics getMetrics() {
+    long processedCount = processed.get() + failed.get();
+    double averageProcessingMillis = processedCount > 0 ? totalProcessingNanos.get() / (processedCount * 1000000d) : 0d;
+    return new MqttDispatchMetrics(capacity - permits.availablePermits(), capacity, processed.get(), failed.get(), dropped.get(), averageProcessingMillis, maxProcessingNanos.get() / 1000000d);
+  }
+
+  /**
+   * Queues message for processing
+   * 
+   * @param listener listener
+   * @param topic message topic
+   * @param message message
+   * @throws InterruptedException when interrupted while waiting for space in the queue
+   */
+  private void dispatch(LabApiMqttListener listener, String topic, MqttMessage message) throws InterruptedException {
+    if (policy == MqttDispatchPolicy.DROP) {
+      if (!permits.tryAcquire()) {
+        dropped.incrementAndGet();
+        logger.warn("MQTT dispatch queue is full, dropping message from topic {}", topic);
+        return;
+      }
+    } else {
+      permits.acquire();
+    }
+
+    Runnable task = () -> handle(listener, topic, message);
+    if (listener.isOrdered()) {
+      getTopicLane(topic).submit(task);
+    } else {
+      submit(task);
+    }
+  }
+
+  /**
+   * Returns lane for the topic. Messages of a topic always end up in the same lane
+   * 
+   * @param topic message topic
+   * @return topic lane
+   */
+  private TopicLane getTopicLane(String topic) {
+    return topicLanes[Math.floorMod(topic.hashCode(), topicLanes.length)];
+  }
+
+  /**
+   * Submits task into the executor. Releases the queue permit if executor rejects the task
+   * 
+   * @param task task
+   */
+  private void submit(Runnable task) {
+    try {
+      managedExecutorService.execute(task);
+    } catch (RuntimeException e) {
+      permits.release();
+      dropped.incrementAndGet();
+      logger.error("Executor rejected MQTT message", e);
+    }
+  }
+
+  /**
+   * Handles single message and records metrics
+   * 
+   * @param listener listener
+   * @param topic message topic
+   * @param message message
+   */
+  private void handle(LabApiMqttListener listener, String topic, MqttMessage message) {
+    long start = System.nanoTime();
+    try {
+      listener.messageArrived(topic, message);
+      processed.incrementAndGet();
+    } catch (Exception e) {
+      failed.incrementAndGet();
+      logger.error(String.format("Error handling MQTT message from topic %s", topic), e);
+    } finally {
+      long elapsed = System.nanoTime() - start;
+      totalProcessingNanos.addAndGet(elapsed);
+      maxProcessingNanos.accumulateAndGet(elapsed, Math::max);
+      permits.release();
+    }
+  }
+
+  /**
+   * Serial lane that runs tasks of the topics hashed into it one at a time
+   */
+  private class TopicLane {
+
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    /**
+     * Adds task into the lane and schedules the lane if it is not already running
+     * 
+     * @param task task
+     */
+    public void submit(Runnable task) {
+      tasks.add(task);
+      schedule();
+    }
+
+    /**
+     * Schedules lane drain if it is not already running
+     */
+    private void schedule() {
+      if (running.compareAndSet(false, true)) {
+        try {
+          managedExecutorService.execute(this::drain);
+        } catch (RuntimeException e) {
+          running.set(false);
+          logger.error("Executor rejected MQTT topic lane", e);
+        }
+      }
+    }
+
+    /**
+     * Runs queued tasks until the lane is empty
+     */
+    private void drain() {
+      Runnable task;
+      while ((task = tasks.poll()) != null) {
+        task.run();
+      }
+
+      running.set(false);
+      if (!tasks.isEmpty()) {
+        schedule();
+      }
+    }
+
+  }
+
+}
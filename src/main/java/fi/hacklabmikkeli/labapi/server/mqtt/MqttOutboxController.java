@@ -0,0 +1,112 @@
+package fi.hacklabmikkeli.labapi.server.mqtt;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.Resource;
+import javax.enterprise.concurrent.ManagedExecutorService;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Event;
+import javax.enterprise.event.Observes;
+import javax.enterprise.event.TransactionPhase;
+import javax.inject.Inject;
+
+import org.slf4j.Logger;
+
+import fi.hacklabmikkeli.labapi.server.persistence.dao.MqttOutboxMessageDAO;
+import fi.hacklabmikkeli.labapi.server.persistence.model.MqttOutboxMessage;
+
+/**
+ * Controller for MQTT outbox. 
+ * 
+ * Messages are written into the outbox within the caller's transaction and published by 
+ * MqttOutboxRelay after the transaction has been committed.
+ * 
+ * @author Heikki Kurhinen
+ */
+@ApplicationScoped
+public class MqttOutboxController {
+
+  @Inject
+  private Logger logger;
+
+  @Inject
+  private MqttOutboxMessageDAO mqttOutboxMessageDAO;
+
+  @Inject
+  private MqttOutboxRelay mqttOutboxRelay;
+
+  @Inject
+  private Event<MqttOutboxEvent> mqttOutboxEvent;
+
+  @Resource
+  private ManagedExecutorService managedExecutorService;
+
+  private final AtomicBoolean relayScheduled = new AtomicBoolean();
+
+  /**
+   * Writes message into the outbox
+   * 
+   * @param topic topic to publish the message into
+   * @param payload message payload
+   * @param qos MQTT quality of service
+   * @param expiresAt time after which the message must not be published anymore or null if message does not expire
+   * 
+   * @return created outbox message
+   */
+  public MqttOutboxMessage queueMessage(String topic, String payload, int qos, OffsetDateTime expiresAt) {
+    MqttOutboxMessage result = mqttOutboxMessageDAO.create(UUID.randomUUID(), topic, payload, qos, expiresAt);
+    mqttOutboxEvent.fire(new MqttOutboxEvent(result.getId()));
+    return result;
+  }
+
+  /**
+   * Wakes up the relay after outbox message has been committed
+   * 
+   * @param event event
+   */
+  public void onMessageQueued(@Observes (during = TransactionPhase.AFTER_SUCCESS) MqttOutboxEvent event) {
+    scheduleRelay();
+  }
+
+  /**
+   * Wakes up the relay after the client has (re)connected
+   * 
+   * @param event event
+   */
+  public void onConnected(@Observes MqttConnectedEvent event) {
+    scheduleRelay();
+  }
+
+  /**
+   * Runs the relay and reschedules it if more messages are waiting
+   */
+  private void runRelay() {
+    relayScheduled.set(false);
+    try {
+      if (mqttOutboxRelay.relay()) {
+        scheduleRelay();
+      }
+    } catch (RuntimeException e) {
+      logger.error("MQTT outbox relay failed", e);
+    }
+  }
+
+  /**
+   * Schedules relay run unless one is already scheduled
+   */
+  private void scheduleRelay() {
+    if (!relayScheduled.compareAndSet(false, true)) {
+      return;
+    }
+
+    try {
+      managedExecutorService.execute(this::runRelay);
+    } catch (RuntimeException e) {
+      relayScheduled.set(false);
+      logger.error("Failed to schedule MQTT outbox relay", e);
+    }
+  }
+
+}
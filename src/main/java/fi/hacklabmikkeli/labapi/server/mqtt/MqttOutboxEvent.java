@@ -0,0 +1,19 @@
+package fi.hacklabmikkeli.labapi.server.mqtt;
+
+import java.util.UUID;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * CDI event fired when message is written into the MQTT outbox
+ * 
+ * @author Heikki Kurhinen
+ */
+@Data
+@AllArgsConstructor
+public class MqttOutboxEvent {
+
+  private UUID messageId;
+
+}
@@ -0,0 +1,106 @@
+package fi.hacklabmikkeli.labapi.server.mqtt;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.inject.Inject;
+
+import org.slf4j.Logger;
+
+import fi.hacklabmikkeli.labapi.server.persistence.dao.MqttOutboxMessageDAO;
+import fi.hacklabmikkeli.labapi.server.persistence.model.MqttOutboxMessage;
+import fi.hacklabmikkeli.labapi.server.settings.SystemSettingController;
+
+/**
+ * Publishes messages from the MQTT outbox. 
+ * 
+ * Relay is woken up when messages are committed into the outbox and when client reconnects, and 
+ * it also runs periodically to retry messages that could not be published. Messages that have expired 
+ * or could not be published in max attempts are given up, so they cannot block the messages behind them.
+ * 
+ * @author Heikki Kurhinen
+ */
+@Singleton
+public class MqttOutboxRelay {
+
+  private static final int BATCH_SIZE = 100;
+  private static final int DELIVERED_RETENTION_DAYS = 7;
+  private static final String MQTT_OUTBOX_MAX_ATTEMPTS_SETTING = "mqtt-outbox-max-attempts";
+  private static final int DEFAULT_MQTT_OUTBOX_MAX_ATTEMPTS = 5;
+
+  @Inject
+  private Logger logger;
+
+  @Inject
+  private MqttController mqttController;
+
+  @Inject
+  private MqttOutboxMessageDAO mqttOutboxMessageDAO;
+
+  @Inject
+  private SystemSettingController systemSettingController;
+
+  /**
+   * Periodically retries undelivered messages
+   */
+  @Schedule (hour = "*", minute = "*", second = "*/5", persistent = false)
+  public void retry() {
+    relay();
+  }
+
+  /**
+   * Periodically removes old delivered and given up messages
+   */
+  @Schedule (hour = "*", minute = "17", persistent = false)
+  public void purgeDelivered() {
+    OffsetDateTime purgeBefore = OffsetDateTime.now().minusDays(DELIVERED_RETENTION_DAYS);
+    int deleted = mqttOutboxMessageDAO.deleteDeliveredBefore(purgeBefore) + mqttOutboxMessageDAO.deleteDeadBefore(purgeBefore);
+    if (deleted > 0) {
+      logger.info("Purged {} delivered or given up MQTT outbox messages", deleted);
+    }
+  }
+
+  /**
+   * Publishes a batch of undelivered messages in creation order. 
+   * 
+   * Expired messages are given up without publishing. Stops at the first message that could not be published, 
+   * unless the message has used all of its attempts, in which case it is given up
+   * 
+   * @return whether there may be more messages waiting to be published
+   */
+  public boolean relay() {
+    if (!mqttController.isConnected()) {
+      return false;
+    }
+
+    int maxAttempts = systemSettingController.getSettingValueInteger(MQTT_OUTBOX_MAX_ATTEMPTS_SETTING, DEFAULT_MQTT_OUTBOX_MAX_ATTEMPTS);
+    List<MqttOutboxMessage> messages = mqttOutboxMessageDAO.listUndeliveredForUpdate(BATCH_SIZE);
+    for (MqttOutboxMessage message : messages) {
+      OffsetDateTime now = OffsetDateTime.now();
+      if (message.getExpiresAt() != null && message.getExpiresAt().isBefore(now)) {
+        logger.warn("MQTT outbox message {} to topic {} expired before it could be published", message.getId(), message.getTopic());
+        mqttOutboxMessageDAO.updateDeadAt(message, now);
+        continue;
+      }
+
+      if (!mqttController.publishMessage(message.getTopic(), message.getPayload(), message.getQos())) {
+        int attempts = message.getAttempts() + 1;
+        mqttOutboxMessageDAO.updateAttempts(message, attempts);
+        if (attempts < maxAttempts) {
+          return false;
+        }
+
+        logger.error("MQTT outbox message {} to topic {} could not be published in {} attempts, giving up", message.getId(), message.getTopic(), attempts);
+        mqttOutboxMessageDAO.updateDeadAt(message, now);
+        continue;
+      }
+
+      mqttOutboxMessageDAO.updateDeliveredAt(message, OffsetDateTime.now());
+    }
+
+    return messages.size() == BATCH_SIZE;
+  }
+
+}
@@ -0,0 +1,93 @@
+package fi.hacklabmikkeli.labapi.server.mqtt;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.paho.client.mqttv3.IMqttMessageListener;
+import org.eclipse.paho.client.mqttv3.MqttTopic;
+
+/**
+ * Routes incoming MQTT messages to listeners by topic filter. 
+ * 
+ * When shared subscription group is given, topics of listeners that allow sharing are subscribed 
+ * as $share/{group}/{topic} so that broker delivers each message to only one server in the group. 
+ * Broker delivers messages of shared subscriptions with the original topic name, so messages are 
+ * matched against the listener topics rather than the subscribed filters
+ * 
+ * @author Heikki Kurhinen
+ */
+public class MqttTopicRouter {
+
+  private static final String SHARED_SUBSCRIPTION_PREFIX = "$share";
+
+  private final String sharedSubscriptionGroup;
+
+  private final Map<String, IMqttMessageListener> topicListeners = new LinkedHashMap<>();
+
+  private final Map<String, String> subscriptionTopics = new LinkedHashMap<>();
+
+  /**
+   * Constructor
+   * 
+   * @param sharedSubscriptionGroup shared subscription group or null if subscriptions are not shared
+   */
+  public MqttTopicRouter(String sharedSubscriptionGroup) {
+    this.sharedSubscriptionGroup = sharedSubscriptionGroup;
+  }
+
+  /**
+   * Adds listener into the router
+   * 
+   * @param listener listener describing the topic
+   * @param messageListener listener that receives the routed messages
+   */
+  public void addListener(LabApiMqttListener listener, IMqttMessageListener messageListener) {
+    topicListeners.put(listener.getTopic(), messageListener);
+    subscriptionTopics.put(listener.getTopic(), getSubscriptionTopic(listener));
+  }
+
+  /**
+   * Returns topic filters to subscribe to
+   * 
+   * @return topic filters
+   */
+  public Collection<String> getSubscriptionTopics() {
+    return Collections.unmodifiableCollection(subscriptionTopics.values());
+  }
+
+  /**
+   * Returns listeners with topic matching the topic the message arrived to
+   * 
+   * @param topic topic the message arrived to
+   * @return matching listeners
+   */
+  public List<IMqttMessageListener> route(String topic) {
+    List<IMqttMessageListener> result = new ArrayList<>();
+    topicListeners.forEach((topicFilter, listener) -> {
+      if (MqttTopic.isMatched(topicFilter, topic)) {
+        result.add(listener);
+      }
+    });
+
+    return result;
+  }
+
+  /**
+   * Returns topic filter used when subscribing to listener's topic
+   * 
+   * @param listener listener
+   * @return topic filter
+   */
+  private String getSubscriptionTopic(LabApiMqttListener listener) {
+    if (sharedSubscriptionGroup == null || !listener.isShared()) {
+      return listener.getTopic();
+    }
+
+    return String.format("%s/%s/%s", SHARED_SUBSCRIPTION_PREFIX, sharedSubscriptionGroup, listener.getTopic());
+  }
+
+}
@@ -11,6 +11,7 @@ import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.Root;
 
 import fi.hacklabmikkeli.labapi.server.persistence.model.Announcement;
+import fi.hacklabmikkeli.labapi.server.persistence.model.AnnouncementHeader;
 import fi.hacklabmikkeli.labapi.server.persistence.model.AnnouncementType;
 import fi.hacklabmikkeli.labapi.server.persistence.model.Announcement_;
 
@@ -71,6 +72,36 @@ public class AnnouncementDAO extends AbstractDAO<Announcement> {
     return query.getResultList();
   }
 
+  /**
+   * List announcement headers ordered by createdAt Desc. Content of the announcements is not loaded
+   * 
+   * @param firstResult first result to return (optional)
+   * @param maxResults  max number of results to return (optional)
+   * 
+   * @return List of announcement headers order by descending created date
+   */
+  public List<AnnouncementHeader> listHeadersOrderCreatedDesc(Long firstResult, Long maxResults) {
+    EntityManager entityManager = getEntityManager();
+
+    CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+    CriteriaQuery<AnnouncementHeader> criteria = criteriaBuilder.createQuery(AnnouncementHeader.class);
+    Root<Announcement> root = criteria.from(Announcement.class);
+    criteria.select(criteriaBuilder.construct(AnnouncementHeader.class, root.get(Announcement_.id), root.get(Announcement_.type), root.get(Announcement_.createdAt)));
+    criteria.orderBy(criteriaBuilder.desc(root.get(Announcement_.createdAt)));
+
+    TypedQuery<AnnouncementHeader> query = entityManager.createQuery(criteria);
+
+    if (firstResult != null) {
+      query.setFirstResult(firstResult.intValue());
+    }
+
+    if (maxResults != null) {
+      query.setMaxResults(maxResults.intValue());
+    }
+
+    return query.getResultList();
+  }
+
   /**
    * Updates announcements content
    * 
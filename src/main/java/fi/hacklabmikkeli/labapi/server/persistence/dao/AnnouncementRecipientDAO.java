@@ -1,16 +1,23 @@
 package fi.hacklabmikkeli.labapi.server.persistence.dao;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import javax.enterprise.context.ApplicationScoped;
 import javax.persistence.EntityManager;
 import javax.persistence.TypedQuery;
 import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaDelete;
 import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Root;
 
 import fi.hacklabmikkeli.labapi.server.persistence.model.Announcement;
+import fi.hacklabmikkeli.labapi.server.persistence.model.Announcement_;
 import fi.hacklabmikkeli.labapi.server.persistence.model.AnnouncementRecipient;
 import fi.hacklabmikkeli.labapi.server.persistence.model.AnnouncementRecipient_;
 
@@ -22,6 +29,11 @@ import fi.hacklabmikkeli.labapi.server.persistence.model.AnnouncementRecipient_;
 @ApplicationScoped
 public class AnnouncementRecipientDAO extends AbstractDAO<AnnouncementRecipient> {
 
+  /**
+   * Number of recipients flushed at once. Matches hibernate.jdbc.batch_size in persistence.xml
+   */
+  private static final int BATCH_SIZE = 50;
+
   /**
    * Creates and persists new announcementRecipient entity
    * 
@@ -41,6 +53,41 @@ public class AnnouncementRecipientDAO extends AbstractDAO<AnnouncementRecipient>
     return persist(announcementRecipient);
   }
 
+  /**
+   * Creates and persists recipients for announcement in JDBC batches. 
+   * 
+   * Persistence context is flushed after every batch and flushed recipients are detached 
+   * so that the flush cost does not grow with the number of recipients
+   * 
+   * @param announcement Annoncement the recipients are related to
+   * @param recipientIds Announcement recipients user ids
+   * 
+   * @return created AnnouncementRecipient entities
+   */
+  public List<AnnouncementRecipient> createAll(Announcement announcement, List<UUID> recipientIds) {
+    EntityManager entityManager = getEntityManager();
+    List<AnnouncementRecipient> result = new ArrayList<>(recipientIds.size());
+    List<AnnouncementRecipient> batch = new ArrayList<>(BATCH_SIZE);
+
+    for (UUID recipientId : recipientIds) {
+      AnnouncementRecipient announcementRecipient = new AnnouncementRecipient();
+      announcementRecipient.setId(UUID.randomUUID());
+      announcementRecipient.setAnnouncement(announcement);
+      announcementRecipient.setRecipientId(recipientId);
+      entityManager.persist(announcementRecipient);
+      batch.add(announcementRecipient);
+      result.add(announcementRecipient);
+
+      if (batch.size() == BATCH_SIZE) {
+        flushBatch(entityManager, batch);
+      }
+    }
+
+    flushBatch(entityManager, batch);
+
+    return result;
+  }
+
   /**
    * List announcementRecipients by announcement
    * 
@@ -61,4 +108,102 @@ public class AnnouncementRecipientDAO extends AbstractDAO<AnnouncementRecipient>
 
     return query.getResultList();
   }
+
+  /**
+   * Lists recipient user ids of multiple announcements with single query
+   * 
+   * @param announcementIds announcement ids
+   * 
+   * @return recipient user ids mapped by announcement id. Announcements without recipients are not included
+   */
+  public Map<UUID, List<UUID>> listRecipientIdsByAnnouncementIds(Collection<UUID> announcementIds) {
+    Map<UUID, List<UUID>> result = new HashMap<>();
+    if (announcementIds.isEmpty()) {
+      return result;
+    }
+
+    EntityManager entityManager = getEntityManager();
+
+    CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+    CriteriaQuery<Object[]> criteria = criteriaBuilder.createQuery(Object[].class);
+    Root<AnnouncementRecipient> root = criteria.from(AnnouncementRecipient.class);
+    Path<UUID> announcementId = root.get(AnnouncementRecipient_.announcement).get(Announcement_.id);
+    criteria.multiselect(announcementId, root.get(AnnouncementRecipient_.recipientId));
+    criteria.where(announcementId.in(announcementIds));
+
+    for (Object[] row : entityManager.createQuery(criteria).getResultList()) {
+      result.computeIfAbsent((UUID) row[0], key -> new ArrayList<>()).add((UUID) row[1]);
+    }
+
+    return result;
+  }
+
+  /**
+   * Counts recipients of multiple announcements with single aggregate query
+   * 
+   * @param announcementIds announcement ids
+   * 
+   * @return recipient counts mapped by announcement id. Announcements without recipients are not included
+   */
+  public Map<UUID, Long> countByAnnouncementIds(Collection<UUID> announcementIds) {
+    Map<UUID, Long> result = new HashMap<>();
+    if (announcementIds.isEmpty()) {
+      return result;
+    }
+
+    EntityManager entityManager = getEntityManager();
+
+    CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+    CriteriaQuery<Object[]> criteria = criteriaBuilder.createQuery(Object[].class);
+    Root<AnnouncementRecipient> root = criteria.from(AnnouncementRecipient.class);
+    Path<UUID> announcementId = root.get(AnnouncementRecipient_.announcement).get(Announcement_.id);
+    criteria.multiselect(announcementId, criteriaBuilder.count(root));
+    criteria.where(announcementId.in(announcementIds));
+    criteria.groupBy(announcementId);
+
+    for (Object[] row : entityManager.createQuery(criteria).getResultList()) {
+      result.put((UUID) row[0], (Long) row[1]);
+    }
+
+    return result;
+  }
+
+  /**
+   * Deletes all recipients of announcement with single statement
+   * 
+   * @param announcement announcement
+   * 
+   * @return number of deleted recipients
+   */
+  public int deleteByAnnouncement(Announcement announcement) {
+    EntityManager entityManager = getEntityManager();
+
+    CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+    CriteriaDelete<AnnouncementRecipient> criteria = criteriaBuilder.createCriteriaDelete(AnnouncementRecipient.class);
+    Root<AnnouncementRecipient> root = criteria.from(AnnouncementRecipient.class);
+    criteria.where(criteriaBuilder.equal(root.get(AnnouncementRecipient_.announcement), announcement));
+
+    int result = entityManager.createQuery(criteria).executeUpdate();
+    if (result > 0) {
+      entityManager.getEntityManagerFactory().getCache().evict(AnnouncementRecipient.class);
+    }
+
+    return result;
+  }
+
+  /**
+   * Flushes pending inserts and detaches the flushed recipients
+   * 
+   * @param entityManager entity manager
+   * @param batch recipients persisted since previous flush
+   */
+  private void flushBatch(EntityManager entityManager, List<AnnouncementRecipient> batch) {
+    if (batch.isEmpty()) {
+      return;
+    }
+
+    entityManager.flush();
+    batch.forEach(entityManager::detach);
+    batch.clear();
+  }
 }
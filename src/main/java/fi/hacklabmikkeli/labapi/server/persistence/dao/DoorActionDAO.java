@@ -1,5 +1,8 @@
 package fi.hacklabmikkeli.labapi.server.persistence.dao;
 
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
 
@@ -7,11 +10,15 @@ import javax.enterprise.context.ApplicationScoped;
 import javax.persistence.EntityManager;
 import javax.persistence.TypedQuery;
 import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaDelete;
 import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.CriteriaUpdate;
+import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
 
 import fi.hacklabmikkeli.labapi.server.persistence.model.Door;
 import fi.hacklabmikkeli.labapi.server.persistence.model.DoorAction;
+import fi.hacklabmikkeli.labapi.server.persistence.model.DoorActionStatus;
 import fi.hacklabmikkeli.labapi.server.persistence.model.DoorActionType;
 import fi.hacklabmikkeli.labapi.server.persistence.model.DoorAction_;
 
@@ -30,49 +37,233 @@ public class DoorActionDAO extends AbstractDAO<DoorAction> {
    * @param door Door the action is related to
    * @param type Type of the door action
    * @param userId Id of the user who initiated the action
+   * @param status acknowledgement status of the action (optional)
    * 
    * @return created DoorAction entity
    */
-  public DoorAction create(UUID id, Door door, DoorActionType type, UUID userId) {
+  public DoorAction create(UUID id, Door door, DoorActionType type, UUID userId, DoorActionStatus status) {
     DoorAction doorAction = new DoorAction();
 
     doorAction.setId(id);
     doorAction.setDoor(door);
     doorAction.setType(type);
     doorAction.setUserId(userId);
+    doorAction.setStatus(status);
 
     return persist(doorAction);
   }
 
   /**
-   * List doorActions by door
+   * List doorActions by door, newest first. 
+   * 
+   * Paging uses keyset cursors instead of offsets: after returns actions older than the cursor 
+   * and before returns actions newer than the cursor, so every page costs the same regardless 
+   * of how deep into the history it is. Actions with equal creation time are ordered by id.
    * 
    * @param door Door to list the actions by
-   * @param firstResult First result to return (optional)
+   * @param from return only actions created at or after this time (optional)
+   * @param to return only actions created before this time (optional)
+   * @param after return only actions after this action in the listing (optional)
+   * @param before return only actions before this action in the listing (optional)
    * @param maxResults Max number of results to return (optional) 
    * 
    * @return List of doorActions of door
    */
-  public List<DoorAction> listByDoor(Door door, Long firstResult, Long maxResults) {
+  public List<DoorAction> listByDoor(Door door, OffsetDateTime from, OffsetDateTime to, DoorAction after, DoorAction before, Long maxResults) {
     EntityManager entityManager = getEntityManager();
 
     CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
     CriteriaQuery<DoorAction> criteria = criteriaBuilder.createQuery(DoorAction.class);
     Root<DoorAction> root = criteria.from(DoorAction.class);
     criteria.select(root);
-    criteria.where(criteriaBuilder.equal(root.get(DoorAction_.door), door));
 
-    TypedQuery<DoorAction> query = entityManager.createQuery(criteria);
+    List<Predicate> restrictions = new ArrayList<>();
+    restrictions.add(criteriaBuilder.equal(root.get(DoorAction_.door), door));
 
-    criteria.orderBy(criteriaBuilder.desc(root.get(DoorAction_.createdAt)));
+    if (from != null) {
+      restrictions.add(criteriaBuilder.greaterThanOrEqualTo(root.get(DoorAction_.createdAt), from));
+    }
 
-    if (firstResult != null) {
-      query.setFirstResult(firstResult.intValue());
+    if (to != null) {
+      restrictions.add(criteriaBuilder.lessThan(root.get(DoorAction_.createdAt), to));
     }
 
+    if (after != null) {
+      restrictions.add(criteriaBuilder.or(
+        criteriaBuilder.lessThan(root.get(DoorAction_.createdAt), after.getCreatedAt()),
+        criteriaBuilder.and(
+          criteriaBuilder.equal(root.get(DoorAction_.createdAt), after.getCreatedAt()),
+          criteriaBuilder.lessThan(root.get(DoorAction_.id), after.getId())
+        )
+      ));
+    }
+
+    if (before != null) {
+      restrictions.add(criteriaBuilder.or(
+        criteriaBuilder.greaterThan(root.get(DoorAction_.createdAt), before.getCreatedAt()),
+        criteriaBuilder.and(
+          criteriaBuilder.equal(root.get(DoorAction_.createdAt), before.getCreatedAt()),
+          criteriaBuilder.greaterThan(root.get(DoorAction_.id), before.getId())
+        )
+      ));
+    }
+
+    criteria.where(restrictions.toArray(new Predicate[0]));
+
+    // Page preceding the before cursor is read in ascending order so that the limit applies next to the cursor
+    boolean reverse = before != null && after == null;
+    if (reverse) {
+      criteria.orderBy(criteriaBuilder.asc(root.get(DoorAction_.createdAt)), criteriaBuilder.asc(root.get(DoorAction_.id)));
+    } else {
+      criteria.orderBy(criteriaBuilder.desc(root.get(DoorAction_.createdAt)), criteriaBuilder.desc(root.get(DoorAction_.id)));
+    }
+
+    TypedQuery<DoorAction> query = entityManager.createQuery(criteria);
+
     if (maxResults != null) {
       query.setMaxResults(maxResults.intValue());
     }
+
+    List<DoorAction> result = query.getResultList();
+    if (reverse) {
+      result = new ArrayList<>(result);
+      Collections.reverse(result);
+    }
+
+    return result;
+  }
+
+  /**
+   * Lists round trip latencies of most recent acknowledged actions of door
+   * 
+   * @param door door
+   * @param maxResults max number of latencies to return
+   * 
+   * @return list of latencies in milliseconds
+   */
+  public List<Long> listLatenciesByDoor(Door door, int maxResults) {
+    EntityManager entityManager = getEntityManager();
+
+    CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+    CriteriaQuery<Long> criteria = criteriaBuilder.createQuery(Long.class);
+    Root<DoorAction> root = criteria.from(DoorAction.class);
+    criteria.select(root.get(DoorAction_.latency));
+    criteria.where(
+      criteriaBuilder.equal(root.get(DoorAction_.door), door),
+      criteriaBuilder.equal(root.get(DoorAction_.status), DoorActionStatus.ACKNOWLEDGED)
+    );
+    criteria.orderBy(criteriaBuilder.desc(root.get(DoorAction_.createdAt)));
+
+    TypedQuery<Long> query = entityManager.createQuery(criteria);
+    query.setMaxResults(maxResults);
+
     return query.getResultList();
   }
+
+  /**
+   * Counts actions of door with given status
+   * 
+   * @param door door
+   * @param status status
+   * 
+   * @return count of actions
+   */
+  public Long countByDoorAndStatus(Door door, DoorActionStatus status) {
+    EntityManager entityManager = getEntityManager();
+
+    CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+    CriteriaQuery<Long> criteria = criteriaBuilder.createQuery(Long.class);
+    Root<DoorAction> root = criteria.from(DoorAction.class);
+    criteria.select(criteriaBuilder.count(root));
+    criteria.where(
+      criteriaBuilder.equal(root.get(DoorAction_.door), door),
+      criteriaBuilder.equal(root.get(DoorAction_.status), status)
+    );
+
+    return entityManager.createQuery(criteria).getSingleResult();
+  }
+
+  /**
+   * Marks pending actions created before given time as timed out
+   * 
+   * @param createdBefore creation time limit
+   * 
+   * @return number of timed out actions
+   */
+  public int updatePendingToTimedOut(OffsetDateTime createdBefore) {
+    EntityManager entityManager = getEntityManager();
+
+    CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+    CriteriaUpdate<DoorAction> criteria = criteriaBuilder.createCriteriaUpdate(DoorAction.class);
+    Root<DoorAction> root = criteria.from(DoorAction.class);
+    criteria.set(root.get(DoorAction_.status), DoorActionStatus.TIMED_OUT);
+    criteria.where(
+      criteriaBuilder.equal(root.get(DoorAction_.status), DoorActionStatus.PENDING),
+      criteriaBuilder.lessThan(root.get(DoorAction_.createdAt), createdBefore)
+    );
+
+    int result = entityManager.createQuery(criteria).executeUpdate();
+    if (result > 0) {
+      entityManager.getEntityManagerFactory().getCache().evict(DoorAction.class);
+    }
+
+    return result;
+  }
+
+  /**
+   * Marks action acknowledged if it is still pending. 
+   * 
+   * Update is conditional on the status in the database, so an acknowledgement racing with the 
+   * timeout sweep cannot overwrite TIMED_OUT status
+   * 
+   * @param doorAction door action
+   * @param acknowledgedAt acknowledgement time
+   * @param latency round trip latency in milliseconds
+   * 
+   * @return number of updated actions, 0 if the action was not pending anymore
+   */
+  public int updatePendingToAcknowledged(DoorAction doorAction, OffsetDateTime acknowledgedAt, Long latency) {
+    EntityManager entityManager = getEntityManager();
+
+    CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+    CriteriaUpdate<DoorAction> criteria = criteriaBuilder.createCriteriaUpdate(DoorAction.class);
+    Root<DoorAction> root = criteria.from(DoorAction.class);
+    criteria.set(root.get(DoorAction_.status), DoorActionStatus.ACKNOWLEDGED);
+    criteria.set(root.get(DoorAction_.acknowledgedAt), acknowledgedAt);
+    criteria.set(root.get(DoorAction_.latency), latency);
+    criteria.where(
+      criteriaBuilder.equal(root.get(DoorAction_.id), doorAction.getId()),
+      criteriaBuilder.equal(root.get(DoorAction_.status), DoorActionStatus.PENDING)
+    );
+
+    int result = entityManager.createQuery(criteria).executeUpdate();
+    if (result > 0) {
+      entityManager.getEntityManagerFactory().getCache().evict(DoorAction.class, doorAction.getId());
+    }
+
+    return result;
+  }
+
+  /**
+   * Deletes all actions of door with single statement
+   * 
+   * @param door door
+   * 
+   * @return number of deleted actions
+   */
+  public int deleteByDoor(Door door) {
+    EntityManager entityManager = getEntityManager();
+
+    CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+    CriteriaDelete<DoorAction> criteria = criteriaBuilder.createCriteriaDelete(DoorAction.class);
+    Root<DoorAction> root = criteria.from(DoorAction.class);
+    criteria.where(criteriaBuilder.equal(root.get(DoorAction_.door), door));
+
+    int result = entityManager.createQuery(criteria).executeUpdate();
+    if (result > 0) {
+      entityManager.getEntityManagerFactory().getCache().evict(DoorAction.class);
+    }
+
+    return result;
+  }
 }
@@ -1,7 +1,12 @@
 package fi.hacklabmikkeli.labapi.server.persistence.dao;
 
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import javax.enterprise.context.ApplicationScoped;
@@ -9,6 +14,7 @@ import javax.persistence.EntityManager;
 import javax.persistence.TypedQuery;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
 
 import org.apache.commons.lang3.StringUtils;
@@ -25,6 +31,23 @@ import fi.hacklabmikkeli.labapi.server.persistence.model.Member_;
 @ApplicationScoped
 public class MemberDAO extends AbstractDAO<Member> {
 
+  private static final int STRIPE_CUSTOMER_CACHE_SIZE = 10000;
+
+  /**
+   * Bounded LRU map from stripe customer id to member id. Entries are verified against 
+   * the member on lookup, so a stale entry only costs the query it would have replaced
+   */
+  private final Map<String, UUID> stripeCustomerMemberIds = Collections.synchronizedMap(new LinkedHashMap<String, UUID>(16, 0.75f, true) {
+
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, UUID> eldest) {
+      return size() > STRIPE_CUSTOMER_CACHE_SIZE;
+    }
+
+  });
+
   /**
    * Creates and persists new member entity
    * 
@@ -43,7 +66,9 @@ public class MemberDAO extends AbstractDAO<Member> {
     member.setStripeCustomerId(stripeCustomerId);
     member.setApprovedAt(approvedAt);
 
-    return persist(member);
+    Member result = persist(member);
+    cacheStripeCustomerId(stripeCustomerId, id);
+    return result;
   }
 
   /**
@@ -58,6 +83,16 @@ public class MemberDAO extends AbstractDAO<Member> {
       return null;
     }
 
+    UUID cachedMemberId = stripeCustomerMemberIds.get(stripeCustomerId);
+    if (cachedMemberId != null) {
+      Member member = findById(cachedMemberId);
+      if (member != null && StringUtils.equals(member.getStripeCustomerId(), stripeCustomerId)) {
+        return member;
+      }
+
+      stripeCustomerMemberIds.remove(stripeCustomerId, cachedMemberId);
+    }
+
     EntityManager entityManager = getEntityManager();
 
     CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
@@ -68,7 +103,12 @@ public class MemberDAO extends AbstractDAO<Member> {
 
     TypedQuery<Member> query = entityManager.createQuery(criteria);
 
-    return query.getSingleResult();
+    Member member = getSingleResult(query);
+    if (member != null) {
+      cacheStripeCustomerId(stripeCustomerId, member.getId());
+    }
+
+    return member;
   }
 
   /**
@@ -103,6 +143,106 @@ public class MemberDAO extends AbstractDAO<Member> {
     return query.getResultList();
   }
 
+  /**
+   * Searches members, newest first. 
+   * 
+   * Paging uses keyset cursors: after returns members created before the cursor member and 
+   * before returns members created after it. Members with equal creation time are ordered by id.
+   * 
+   * @param statuses return only members with one of these statuses (optional)
+   * @param createdFrom return only members created at or after this time (optional)
+   * @param createdTo return only members created before this time (optional)
+   * @param approvedFrom return only members approved at or after this time (optional)
+   * @param approvedTo return only members approved before this time (optional)
+   * @param hasStripeCustomer return only members with or without stripe customer (optional)
+   * @param after return only members after this member in the listing (optional)
+   * @param before return only members before this member in the listing (optional)
+   * @param maxResults max number of results to return (optional)
+   * 
+   * @return List of matching members
+   */
+  @SuppressWarnings ("squid:S00107")
+  public List<Member> search(Collection<MemberStatus> statuses, OffsetDateTime createdFrom, OffsetDateTime createdTo, OffsetDateTime approvedFrom, 
+      OffsetDateTime approvedTo, Boolean hasStripeCustomer, Member after, Member before, Long maxResults) {
+    EntityManager entityManager = getEntityManager();
+
+    CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+    CriteriaQuery<Member> criteria = criteriaBuilder.createQuery(Member.class);
+    Root<Member> root = criteria.from(Member.class);
+    criteria.select(root);
+
+    List<Predicate> restrictions = getSearchRestrictions(criteriaBuilder, root, statuses, createdFrom, createdTo, approvedFrom, approvedTo, hasStripeCustomer);
+
+    if (after != null) {
+      restrictions.add(criteriaBuilder.or(
+        criteriaBuilder.lessThan(root.get(Member_.createdAt), after.getCreatedAt()),
+        criteriaBuilder.and(
+          criteriaBuilder.equal(root.get(Member_.createdAt), after.getCreatedAt()),
+          criteriaBuilder.lessThan(root.get(Member_.id), after.getId())
+        )
+      ));
+    }
+
+    if (before != null) {
+      restrictions.add(criteriaBuilder.or(
+        criteriaBuilder.greaterThan(root.get(Member_.createdAt), before.getCreatedAt()),
+        criteriaBuilder.and(
+          criteriaBuilder.equal(root.get(Member_.createdAt), before.getCreatedAt()),
+          criteriaBuilder.greaterThan(root.get(Member_.id), before.getId())
+        )
+      ));
+    }
+
+    criteria.where(restrictions.toArray(new Predicate[0]));
+
+    // Page preceding the before cursor is read in ascending order so that the limit applies next to the cursor
+    boolean reverse = before != null && after == null;
+    if (reverse) {
+      criteria.orderBy(criteriaBuilder.asc(root.get(Member_.createdAt)), criteriaBuilder.asc(root.get(Member_.id)));
+    } else {
+      criteria.orderBy(criteriaBuilder.desc(root.get(Member_.createdAt)), criteriaBuilder.desc(root.get(Member_.id)));
+    }
+
+    TypedQuery<Member> query = entityManager.createQuery(criteria);
+
+    if (maxResults != null) {
+      query.setMaxResults(maxResults.intValue());
+    }
+
+    List<Member> result = query.getResultList();
+    if (reverse) {
+      result = new ArrayList<>(result);
+      Collections.reverse(result);
+    }
+
+    return result;
+  }
+
+  /**
+   * Counts members matching search filters
+   * 
+   * @param statuses count only members with one of these statuses (optional)
+   * @param createdFrom count only members created at or after this time (optional)
+   * @param createdTo count only members created before this time (optional)
+   * @param approvedFrom count only members approved at or after this time (optional)
+   * @param approvedTo count only members approved before this time (optional)
+   * @param hasStripeCustomer count only members with or without stripe customer (optional)
+   * 
+   * @return count of matching members
+   */
+  public Long countSearch(Collection<MemberStatus> statuses, OffsetDateTime createdFrom, OffsetDateTime createdTo, OffsetDateTime approvedFrom, 
+      OffsetDateTime approvedTo, Boolean hasStripeCustomer) {
+    EntityManager entityManager = getEntityManager();
+
+    CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+    CriteriaQuery<Long> criteria = criteriaBuilder.createQuery(Long.class);
+    Root<Member> root = criteria.from(Member.class);
+    criteria.select(criteriaBuilder.count(root));
+    criteria.where(getSearchRestrictions(criteriaBuilder, root, statuses, createdFrom, createdTo, approvedFrom, approvedTo, hasStripeCustomer).toArray(new Predicate[0]));
+
+    return entityManager.createQuery(criteria).getSingleResult();
+  }
+
   /**
    * Updates members status
    * 
@@ -125,8 +265,11 @@ public class MemberDAO extends AbstractDAO<Member> {
    * @return updated member
    */
   public Member updateStripeCustomerId(Member member, String stripeCustomerId) {
+    uncacheStripeCustomerId(member);
     member.setStripeCustomerId(stripeCustomerId);
-    return persist(member);
+    Member result = persist(member);
+    cacheStripeCustomerId(stripeCustomerId, member.getId());
+    return result;
   }
 
   /**
@@ -141,4 +284,78 @@ public class MemberDAO extends AbstractDAO<Member> {
     member.setApprovedAt(approvedAt);
     return persist(member);
   }
+
+  /**
+   * Builds restrictions shared by member search and count queries
+   * 
+   * @param criteriaBuilder criteria builder
+   * @param root member root
+   * @param statuses statuses (optional)
+   * @param createdFrom created at lower bound (optional)
+   * @param createdTo created at upper bound (optional)
+   * @param approvedFrom approved at lower bound (optional)
+   * @param approvedTo approved at upper bound (optional)
+   * @param hasStripeCustomer whether member has stripe customer (optional)
+   * @return list of restrictions
+   */
+  @SuppressWarnings ("squid:S00107")
+  private List<Predicate> getSearchRestrictions(CriteriaBuilder criteriaBuilder, Root<Member> root, Collection<MemberStatus> statuses, OffsetDateTime createdFrom, 
+      OffsetDateTime createdTo, OffsetDateTime approvedFrom, OffsetDateTime approvedTo, Boolean hasStripeCustomer) {
+    List<Predicate> restrictions = new ArrayList<>();
+
+    if (statuses != null && !statuses.isEmpty()) {
+      restrictions.add(root.get(Member_.status).in(statuses));
+    }
+
+    if (createdFrom != null) {
+      restrictions.add(criteriaBuilder.greaterThanOrEqualTo(root.get(Member_.createdAt), createdFrom));
+    }
+
+    if (createdTo != null) {
+      restrictions.add(criteriaBuilder.lessThan(root.get(Member_.createdAt), createdTo));
+    }
+
+    if (approvedFrom != null) {
+      restrictions.add(criteriaBuilder.greaterThanOrEqualTo(root.get(Member_.approvedAt), approvedFrom));
+    }
+
+    if (approvedTo != null) {
+      restrictions.add(criteriaBuilder.lessThan(root.get(Member_.approvedAt), approvedTo));
+    }
+
+    if (hasStripeCustomer != null) {
+      restrictions.add(hasStripeCustomer ? criteriaBuilder.isNotNull(root.get(Member_.stripeCustomerId)) : criteriaBuilder.isNull(root.get(Member_.stripeCustomerId)));
+    }
+
+    return restrictions;
+  }
+
+  @Override
+  public void delete(Member member) {
+    uncacheStripeCustomerId(member);
+    super.delete(member);
+  }
+
+  /**
+   * Stores stripe customer id mapping into the lookup cache
+   * 
+   * @param stripeCustomerId stripe customer id (optional)
+   * @param memberId member id
+   */
+  private void cacheStripeCustomerId(String stripeCustomerId, UUID memberId) {
+    if (StringUtils.isNotBlank(stripeCustomerId)) {
+      stripeCustomerMemberIds.put(stripeCustomerId, memberId);
+    }
+  }
+
+  /**
+   * Removes members current stripe customer id mapping from the lookup cache
+   * 
+   * @param member member
+   */
+  private void uncacheStripeCustomerId(Member member) {
+    if (StringUtils.isNotBlank(member.getStripeCustomerId())) {
+      stripeCustomerMemberIds.remove(member.getStripeCustomerId(), member.getId());
+    }
+  }
 }
@@ -0,0 +1,154 @@
+package fi.hacklabmikkeli.labapi.server.persistence.dao;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaDelete;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Root;
+
+import fi.hacklabmikkeli.labapi.server.persistence.model.MqttOutboxMessage;
+import fi.hacklabmikkeli.labapi.server.persistence.model.MqttOutboxMessage_;
+
+/**
+ * DAO class for MqttOutboxMessage entity
+ * 
+ * @author Heikki Kurhinen
+ */
+@ApplicationScoped
+public class MqttOutboxMessageDAO extends AbstractDAO<MqttOutboxMessage> {
+
+  /**
+   * Creates and persists new outbox message
+   * 
+   * @param id id
+   * @param topic topic to publish the message into
+   * @param payload message payload
+   * @param qos MQTT quality of service
+   * @param expiresAt time after which the message must not be published anymore or null if message does not expire
+   * 
+   * @return created MqttOutboxMessage entity
+   */
+  public MqttOutboxMessage create(UUID id, String topic, String payload, Integer qos, OffsetDateTime expiresAt) {
+    MqttOutboxMessage mqttOutboxMessage = new MqttOutboxMessage();
+
+    mqttOutboxMessage.setId(id);
+    mqttOutboxMessage.setTopic(topic);
+    mqttOutboxMessage.setPayload(payload);
+    mqttOutboxMessage.setQos(qos);
+    mqttOutboxMessage.setAttempts(0);
+    mqttOutboxMessage.setExpiresAt(expiresAt);
+
+    return persist(mqttOutboxMessage);
+  }
+
+  /**
+   * Lists undelivered messages that have not been given up in creation order. 
+   * 
+   * Returned rows are locked for the rest of the transaction, so that concurrent relays do not publish the same messages
+   * 
+   * @param maxResults max number of results to return
+   * 
+   * @return list of undelivered messages
+   */
+  public List<MqttOutboxMessage> listUndeliveredForUpdate(int maxResults) {
+    EntityManager entityManager = getEntityManager();
+
+    CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+    CriteriaQuery<MqttOutboxMessage> criteria = criteriaBuilder.createQuery(MqttOutboxMessage.class);
+    Root<MqttOutboxMessage> root = criteria.from(MqttOutboxMessage.class);
+    criteria.select(root);
+    criteria.where(
+      criteriaBuilder.isNull(root.get(MqttOutboxMessage_.deliveredAt)),
+      criteriaBuilder.isNull(root.get(MqttOutboxMessage_.deadAt))
+    );
+    criteria.orderBy(criteriaBuilder.asc(root.get(MqttOutboxMessage_.createdAt)));
+
+    TypedQuery<MqttOutboxMessage> query = entityManager.createQuery(criteria);
+    query.setLockMode(LockModeType.PESSIMISTIC_WRITE);
+    query.setMaxResults(maxResults);
+
+    return query.getResultList();
+  }
+
+  /**
+   * Deletes messages delivered before given time
+   * 
+   * @param deliveredBefore delivery time limit
+   * 
+   * @return number of deleted messages
+   */
+  public int deleteDeliveredBefore(OffsetDateTime deliveredBefore) {
+    EntityManager entityManager = getEntityManager();
+
+    CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+    CriteriaDelete<MqttOutboxMessage> criteria = criteriaBuilder.createCriteriaDelete(MqttOutboxMessage.class);
+    Root<MqttOutboxMessage> root = criteria.from(MqttOutboxMessage.class);
+    criteria.where(criteriaBuilder.lessThan(root.get(MqttOutboxMessage_.deliveredAt), deliveredBefore));
+
+    return entityManager.createQuery(criteria).executeUpdate();
+  }
+
+  /**
+   * Deletes messages given up before given time
+   * 
+   * @param deadBefore time limit
+   * 
+   * @return number of deleted messages
+   */
+  public int deleteDeadBefore(OffsetDateTime deadBefore) {
+    EntityManager entityManager = getEntityManager();
+
+    CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+    CriteriaDelete<MqttOutboxMessage> criteria = criteriaBuilder.createCriteriaDelete(MqttOutboxMessage.class);
+    Root<MqttOutboxMessage> root = criteria.from(MqttOutboxMessage.class);
+    criteria.where(criteriaBuilder.lessThan(root.get(MqttOutboxMessage_.deadAt), deadBefore));
+
+    return entityManager.createQuery(criteria).executeUpdate();
+  }
+
+  /**
+   * Updates time when message was given up
+   * 
+   * @param mqttOutboxMessage message to update
+   * @param deadAt time when message was given up
+   * 
+   * @return updated message
+   */
+  public MqttOutboxMessage updateDeadAt(MqttOutboxMessage mqttOutboxMessage, OffsetDateTime deadAt) {
+    mqttOutboxMessage.setDeadAt(deadAt);
+    return persist(mqttOutboxMessage);
+  }
+
+  /**
+   * Updates message delivery time
+   * 
+   * @param mqttOutboxMessage message to update
+   * @param deliveredAt delivery time
+   * 
+   * @return updated message
+   */
+  public MqttOutboxMessage updateDeliveredAt(MqttOutboxMessage mqttOutboxMessage, OffsetDateTime deliveredAt) {
+    mqttOutboxMessage.setDeliveredAt(deliveredAt);
+    return persist(mqttOutboxMessage);
+  }
+
+  /**
+   * Updates message delivery attempt count
+   * 
+   * @param mqttOutboxMessage message to update
+   * @param attempts delivery attempt count
+   * 
+   * @return updated message
+   */
+  public MqttOutboxMessage updateAttempts(MqttOutboxMessage mqttOutboxMessage, Integer attempts) {
+    mqttOutboxMessage.setAttempts(attempts);
+    return persist(mqttOutboxMessage);
+  }
+}
@@ -0,0 +1,46 @@
+package fi.hacklabmikkeli.labapi.server.persistence.dao;
+
+import java.time.OffsetDateTime;
+
+import javax.enterprise.context.ApplicationScoped;
+
+import fi.hacklabmikkeli.labapi.server.persistence.model.StripeCustomerSync;
+
+/**
+ * DAO class for StripeCustomerSync entity
+ * 
+ * @author Heikki Kurhinen
+ */
+@ApplicationScoped
+public class StripeCustomerSyncDAO extends AbstractDAO<StripeCustomerSync> {
+
+  /**
+   * Creates and persists new customer sync marker
+   * 
+   * @param customerId Stripe customer id
+   * @param syncedAt synchronization time
+   * 
+   * @return created StripeCustomerSync entity
+   */
+  public StripeCustomerSync create(String customerId, OffsetDateTime syncedAt) {
+    StripeCustomerSync stripeCustomerSync = new StripeCustomerSync();
+
+    stripeCustomerSync.setCustomerId(customerId);
+    stripeCustomerSync.setSyncedAt(syncedAt);
+
+    return persist(stripeCustomerSync);
+  }
+
+  /**
+   * Updates synchronization time
+   * 
+   * @param stripeCustomerSync sync marker to update
+   * @param syncedAt synchronization time
+   * 
+   * @return updated sync marker
+   */
+  public StripeCustomerSync updateSyncedAt(StripeCustomerSync stripeCustomerSync, OffsetDateTime syncedAt) {
+    stripeCustomerSync.setSyncedAt(syncedAt);
+    return persist(stripeCustomerSync);
+  }
+}
@@ -0,0 +1,56 @@
+package fi.hacklabmikkeli.labapi.server.persistence.dao;
+
+import java.time.OffsetDateTime;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.persistence.EntityManager;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaDelete;
+import javax.persistence.criteria.Root;
+
+import fi.hacklabmikkeli.labapi.server.persistence.model.StripeProcessedEvent;
+import fi.hacklabmikkeli.labapi.server.persistence.model.StripeProcessedEvent_;
+
+/**
+ * DAO class for StripeProcessedEvent entity
+ * 
+ * @author Heikki Kurhinen
+ */
+@ApplicationScoped
+public class StripeProcessedEventDAO extends AbstractDAO<StripeProcessedEvent> {
+
+  /**
+   * Creates and persists new processed event entry
+   * 
+   * @param id Stripe event id
+   * @param type Stripe event type
+   * 
+   * @return created StripeProcessedEvent entity
+   */
+  public StripeProcessedEvent create(String id, String type) {
+    StripeProcessedEvent stripeProcessedEvent = new StripeProcessedEvent();
+
+    stripeProcessedEvent.setId(id);
+    stripeProcessedEvent.setType(type);
+
+    return persist(stripeProcessedEvent);
+  }
+
+  /**
+   * Deletes entries for events processed before given time
+   * 
+   * @param processedBefore processing time limit
+   * 
+   * @return number of deleted entries
+   */
+  public int deleteProcessedBefore(OffsetDateTime processedBefore) {
+    EntityManager entityManager = getEntityManager();
+
+    CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+    CriteriaDelete<StripeProcessedEvent> criteria = criteriaBuilder.createCriteriaDelete(StripeProcessedEvent.class);
+    Root<StripeProcessedEvent> root = criteria.from(StripeProcessedEvent.class);
+    criteria.where(criteriaBuilder.lessThan(root.get(StripeProcessedEvent_.processedAt), processedBefore));
+
+    return entityManager.createQuery(criteria).executeUpdate();
+  }
+}
@@ -0,0 +1,110 @@
+package fi.hacklabmikkeli.labapi.server.persistence.dao;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Root;
+
+import fi.hacklabmikkeli.labapi.server.persistence.model.StripeSubscription;
+import fi.hacklabmikkeli.labapi.server.persistence.model.StripeSubscription_;
+
+/**
+ * DAO class for StripeSubscription entity
+ * 
+ * @author Heikki Kurhinen
+ */
+@ApplicationScoped
+public class StripeSubscriptionDAO extends AbstractDAO<StripeSubscription> {
+
+  /**
+   * Creates and persists new subscription copy
+   * 
+   * @param id stripe subscription id
+   * @param customerId stripe customer id
+   * @param planId stripe plan id (optional)
+   * @param status subscription status
+   * @param cancelAtPeriodEnd whether subscription is cancelled at the end of the period (optional)
+   * @param currentPeriodEnd end of the current period (optional)
+   * @param sourceCreated creation time of the Stripe state the copy was made from in epoch seconds
+   * 
+   * @return created StripeSubscription entity
+   */
+  public StripeSubscription create(String id, String customerId, String planId, String status, Boolean cancelAtPeriodEnd, OffsetDateTime currentPeriodEnd, Long sourceCreated) {
+    StripeSubscription stripeSubscription = new StripeSubscription();
+
+    stripeSubscription.setId(id);
+    stripeSubscription.setCustomerId(customerId);
+    stripeSubscription.setPlanId(planId);
+    stripeSubscription.setStatus(status);
+    stripeSubscription.setCancelAtPeriodEnd(cancelAtPeriodEnd);
+    stripeSubscription.setCurrentPeriodEnd(currentPeriodEnd);
+    stripeSubscription.setSourceCreated(sourceCreated);
+
+    return persist(stripeSubscription);
+  }
+
+  /**
+   * Lists subscriptions of customer
+   * 
+   * @param customerId stripe customer id
+   * 
+   * @return list of subscriptions of customer
+   */
+  public List<StripeSubscription> listByCustomerId(String customerId) {
+    EntityManager entityManager = getEntityManager();
+
+    CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+    CriteriaQuery<StripeSubscription> criteria = criteriaBuilder.createQuery(StripeSubscription.class);
+    Root<StripeSubscription> root = criteria.from(StripeSubscription.class);
+    criteria.select(root);
+    criteria.where(criteriaBuilder.equal(root.get(StripeSubscription_.customerId), customerId));
+
+    TypedQuery<StripeSubscription> query = entityManager.createQuery(criteria);
+
+    return query.getResultList();
+  }
+
+  /**
+   * Counts subscriptions grouped by plan and status
+   * 
+   * @return list of rows containing plan id, status and count
+   */
+  public List<Object[]> countByPlanAndStatus() {
+    EntityManager entityManager = getEntityManager();
+
+    CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+    CriteriaQuery<Object[]> criteria = criteriaBuilder.createQuery(Object[].class);
+    Root<StripeSubscription> root = criteria.from(StripeSubscription.class);
+    criteria.multiselect(root.get(StripeSubscription_.planId), root.get(StripeSubscription_.status), criteriaBuilder.count(root));
+    criteria.groupBy(root.get(StripeSubscription_.planId), root.get(StripeSubscription_.status));
+
+    return entityManager.createQuery(criteria).getResultList();
+  }
+
+  /**
+   * Updates subscription copy to match newer Stripe state
+   * 
+   * @param stripeSubscription subscription to update
+   * @param planId stripe plan id (optional)
+   * @param status subscription status
+   * @param cancelAtPeriodEnd whether subscription is cancelled at the end of the period (optional)
+   * @param currentPeriodEnd end of the current period (optional)
+   * @param sourceCreated creation time of the Stripe state the copy was made from in epoch seconds
+   * 
+   * @return updated StripeSubscription entity
+   */
+  public StripeSubscription updateState(StripeSubscription stripeSubscription, String planId, String status, Boolean cancelAtPeriodEnd, OffsetDateTime currentPeriodEnd, Long sourceCreated) {
+    stripeSubscription.setPlanId(planId);
+    stripeSubscription.setStatus(status);
+    stripeSubscription.setCancelAtPeriodEnd(cancelAtPeriodEnd);
+    stripeSubscription.setCurrentPeriodEnd(currentPeriodEnd);
+    stripeSubscription.setSourceCreated(sourceCreated);
+    return persist(stripeSubscription);
+  }
+
+}
@@ -1,5 +1,6 @@
 package fi.hacklabmikkeli.labapi.server.persistence.dao;
 
+import java.util.List;
 import java.util.UUID;
 
 import javax.enterprise.context.ApplicationScoped;
@@ -19,6 +20,8 @@ import fi.hacklabmikkeli.labapi.server.persistence.model.SystemSetting_;
 @ApplicationScoped
 public class SystemSettingDAO extends AbstractDAO<SystemSetting> {
 
+  private static final char LIKE_ESCAPE = '\\';
+
   /**
    * Creates new SystemSetting entity
    * 
@@ -56,6 +59,27 @@ public class SystemSettingDAO extends AbstractDAO<SystemSetting> {
     return getSingleResult(entityManager.createQuery(criteria));
   }
 
+  /**
+   * Lists system settings which keys start with given prefix. 
+   * 
+   * Query is served by the unique index of the setting key column
+   * 
+   * @param prefix key prefix
+   * @return settings ordered by key
+   */
+  public List<SystemSetting> listByKeyPrefix(String prefix) {
+    EntityManager entityManager = getEntityManager();
+
+    CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+    CriteriaQuery<SystemSetting> criteria = criteriaBuilder.createQuery(SystemSetting.class);
+    Root<SystemSetting> root = criteria.from(SystemSetting.class);
+    criteria.select(root);
+    criteria.where(criteriaBuilder.like(root.get(SystemSetting_.key), escapeLike(prefix) + "%", LIKE_ESCAPE));
+    criteria.orderBy(criteriaBuilder.asc(root.get(SystemSetting_.key)));
+
+    return entityManager.createQuery(criteria).getResultList();
+  }
+
   /**
    * Updates system setting value
    * 
@@ -68,4 +92,24 @@ public class SystemSettingDAO extends AbstractDAO<SystemSetting> {
     return persist(setting);
   }
 
+  /**
+   * Escapes like wildcards from the value
+   * 
+   * @param value value
+   * @return escaped value
+   */
+  private String escapeLike(String value) {
+    StringBuilder result = new StringBuilder(value.length());
+    
+    for (char c : value.toCharArray()) {
+      if (c == LIKE_ESCAPE || c == '%' || c == '_') {
+        result.append(LIKE_ESCAPE);
+      }
+      
+      result.append(c);
+    }
+    
+    return result.toString();
+  }
+
 }
@@ -0,0 +1,178 @@
+package fi.hacklabmikkeli.labapi.server.persistence.dao;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaDelete;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Subquery;
+
+import fi.hacklabmikkeli.labapi.server.persistence.model.WebhookInboxMessage;
+import fi.hacklabmikkeli.labapi.server.persistence.model.WebhookInboxMessage_;
+import fi.hacklabmikkeli.labapi.server.persistence.model.WebhookInboxStatus;
+
+/**
+ * DAO class for WebhookInboxMessage entity
+ * 
+ * @author Heikki Kurhinen
+ */
+@ApplicationScoped
+public class WebhookInboxMessageDAO extends AbstractDAO<WebhookInboxMessage> {
+
+  /**
+   * Creates and persists new inbox message
+   * 
+   * @param id id
+   * @param type webhook type
+   * @param payload verified webhook payload
+   * @param partitionKey key of the partition the message is ordered within or null if message is not ordered
+   * @param sourceCreated creation time of the webhook at the source in epoch seconds
+   * @param nextAttemptAt time when the message should be processed
+   * 
+   * @return created WebhookInboxMessage entity
+   */
+  public WebhookInboxMessage create(UUID id, String type, String payload, String partitionKey, Long sourceCreated, OffsetDateTime nextAttemptAt) {
+    WebhookInboxMessage webhookInboxMessage = new WebhookInboxMessage();
+
+    webhookInboxMessage.setId(id);
+    webhookInboxMessage.setType(type);
+    webhookInboxMessage.setPayload(payload);
+    webhookInboxMessage.setPartitionKey(partitionKey);
+    webhookInboxMessage.setSourceCreated(sourceCreated);
+    webhookInboxMessage.setStatus(WebhookInboxStatus.PENDING);
+    webhookInboxMessage.setAttempts(0);
+    webhookInboxMessage.setNextAttemptAt(nextAttemptAt);
+
+    return persist(webhookInboxMessage);
+  }
+
+  /**
+   * Lists messages that are due for processing in creation order. 
+   * 
+   * Messages in PROCESSING status are due when their lease has expired, i.e. the worker processing them has died. 
+   * Only the first unfinished message of each partition is listed, ordered by source creation time, so a partition 
+   * is held while its first message is being processed or waiting for a retry. Dead messages do not hold the partition. 
+   * Returned rows are locked for the rest of the transaction, so that concurrent workers do not claim the same messages
+   * 
+   * @param now current time
+   * @param maxResults max number of results to return
+   * 
+   * @return list of due messages
+   */
+  public List<WebhookInboxMessage> listDueForUpdate(OffsetDateTime now, int maxResults) {
+    EntityManager entityManager = getEntityManager();
+
+    CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+    CriteriaQuery<WebhookInboxMessage> criteria = criteriaBuilder.createQuery(WebhookInboxMessage.class);
+    Root<WebhookInboxMessage> root = criteria.from(WebhookInboxMessage.class);
+    Subquery<UUID> predecessors = criteria.subquery(UUID.class);
+    Root<WebhookInboxMessage> predecessor = predecessors.from(WebhookInboxMessage.class);
+    predecessors.select(predecessor.get(WebhookInboxMessage_.id));
+    predecessors.where(
+      criteriaBuilder.equal(predecessor.get(WebhookInboxMessage_.partitionKey), root.get(WebhookInboxMessage_.partitionKey)),
+      predecessor.get(WebhookInboxMessage_.status).in(WebhookInboxStatus.PENDING, WebhookInboxStatus.PROCESSING),
+      criteriaBuilder.or(
+        criteriaBuilder.lessThan(predecessor.get(WebhookInboxMessage_.sourceCreated), root.get(WebhookInboxMessage_.sourceCreated)),
+        criteriaBuilder.and(
+          criteriaBuilder.equal(predecessor.get(WebhookInboxMessage_.sourceCreated), root.get(WebhookInboxMessage_.sourceCreated)),
+          criteriaBuilder.lessThan(predecessor.get(WebhookInboxMessage_.createdAt), root.get(WebhookInboxMessage_.createdAt))
+        ),
+        criteriaBuilder.and(
+          criteriaBuilder.equal(predecessor.get(WebhookInboxMessage_.sourceCreated), root.get(WebhookInboxMessage_.sourceCreated)),
+          criteriaBuilder.equal(predecessor.get(WebhookInboxMessage_.createdAt), root.get(WebhookInboxMessage_.createdAt)),
+          criteriaBuilder.lessThan(predecessor.get(WebhookInboxMessage_.id), root.get(WebhookInboxMessage_.id))
+        )
+      )
+    );
+
+    criteria.select(root);
+    criteria.where(
+      root.get(WebhookInboxMessage_.status).in(WebhookInboxStatus.PENDING, WebhookInboxStatus.PROCESSING),
+      criteriaBuilder.lessThanOrEqualTo(root.get(WebhookInboxMessage_.nextAttemptAt), now),
+      criteriaBuilder.not(criteriaBuilder.exists(predecessors))
+    );
+    criteria.orderBy(criteriaBuilder.asc(root.get(WebhookInboxMessage_.createdAt)));
+
+    TypedQuery<WebhookInboxMessage> query = entityManager.createQuery(criteria);
+    query.setLockMode(LockModeType.PESSIMISTIC_WRITE);
+    query.setMaxResults(maxResults);
+
+    return query.getResultList();
+  }
+
+  /**
+   * Deletes messages processed before given time
+   * 
+   * @param processedBefore processing time limit
+   * 
+   * @return number of deleted messages
+   */
+  public int deleteProcessedBefore(OffsetDateTime processedBefore) {
+    EntityManager entityManager = getEntityManager();
+
+    CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+    CriteriaDelete<WebhookInboxMessage> criteria = criteriaBuilder.createCriteriaDelete(WebhookInboxMessage.class);
+    Root<WebhookInboxMessage> root = criteria.from(WebhookInboxMessage.class);
+    criteria.where(
+      criteriaBuilder.equal(root.get(WebhookInboxMessage_.status), WebhookInboxStatus.PROCESSED),
+      criteriaBuilder.lessThan(root.get(WebhookInboxMessage_.processedAt), processedBefore)
+    );
+
+    return entityManager.createQuery(criteria).executeUpdate();
+  }
+
+  /**
+   * Marks message claimed by a worker
+   * 
+   * @param webhookInboxMessage message to update
+   * @param attempts processing attempt count
+   * @param leaseUntil time after which the message may be claimed again
+   * 
+   * @return updated message
+   */
+  public WebhookInboxMessage updateClaimed(WebhookInboxMessage webhookInboxMessage, Integer attempts, OffsetDateTime leaseUntil) {
+    webhookInboxMessage.setStatus(WebhookInboxStatus.PROCESSING);
+    webhookInboxMessage.setAttempts(attempts);
+    webhookInboxMessage.setNextAttemptAt(leaseUntil);
+    return persist(webhookInboxMessage);
+  }
+
+  /**
+   * Marks message processed
+   * 
+   * @param webhookInboxMessage message to update
+   * @param processedAt processing time
+   * 
+   * @return updated message
+   */
+  public WebhookInboxMessage updateProcessed(WebhookInboxMessage webhookInboxMessage, OffsetDateTime processedAt) {
+    webhookInboxMessage.setStatus(WebhookInboxStatus.PROCESSED);
+    webhookInboxMessage.setProcessedAt(processedAt);
+    webhookInboxMessage.setLastError(null);
+    return persist(webhookInboxMessage);
+  }
+
+  /**
+   * Records failed processing attempt
+   * 
+   * @param webhookInboxMessage message to update
+   * @param status new status, PENDING for retry or DEAD when retries have been exhausted
+   * @param nextAttemptAt time of next attempt
+   * @param lastError description of the failure
+   * 
+   * @return updated message
+   */
+  public WebhookInboxMessage updateFailed(WebhookInboxMessage webhookInboxMessage, WebhookInboxStatus status, OffsetDateTime nextAttemptAt, String lastError) {
+    webhookInboxMessage.setStatus(status);
+    webhookInboxMessage.setNextAttemptAt(nextAttemptAt);
+    webhookInboxMessage.setLastError(lastError);
+    return persist(webhookInboxMessage);
+  }
+}
@@ -0,0 +1,24 @@
+package fi.hacklabmikkeli.labapi.server.persistence.model;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Query projection of announcement without the content
+ * 
+ * @author Heikki Kurhinen
+ */
+@Data
+@AllArgsConstructor
+public class AnnouncementHeader {
+
+  private UUID id;
+
+  private AnnouncementType type;
+
+  private OffsetDateTime createdAt;
+
+}
@@ -42,6 +42,15 @@ public class DoorAction {
   @Column (nullable = false)
   private OffsetDateTime createdAt;
 
+  @Column (nullable = true)
+  private DoorActionStatus status;
+
+  @Column (nullable = true)
+  private OffsetDateTime acknowledgedAt;
+
+  @Column (nullable = true)
+  private Long latency;
+
   @PrePersist
   public void onCreate() {
     setCreatedAt(OffsetDateTime.now());
@@ -0,0 +1,15 @@
+package fi.hacklabmikkeli.labapi.server.persistence.model;
+
+/**
+ * @author Heikki Kurhinen
+ * 
+ * Enumeration describing acknowledgement status of door action
+ */
+public enum DoorActionStatus {
+
+  PENDING,
+
+  ACKNOWLEDGED,
+
+  TIMED_OUT
+}
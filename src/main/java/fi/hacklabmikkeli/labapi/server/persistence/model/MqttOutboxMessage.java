@@ -0,0 +1,64 @@
+package fi.hacklabmikkeli.labapi.server.persistence.model;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Lob;
+import javax.persistence.PrePersist;
+import javax.validation.constraints.NotNull;
+
+import org.hibernate.annotations.Type;
+import org.hibernate.validator.constraints.NotEmpty;
+
+import lombok.Data;
+
+/**
+ * @author Heikki Kurhinen
+ * 
+ * JPA entity for storing MQTT messages waiting to be published
+ */
+@Entity
+@Data
+public class MqttOutboxMessage {
+
+  @Id
+  @Column(columnDefinition = "BINARY(16)")
+  private UUID id;
+
+  @NotNull
+  @NotEmpty
+  @Column (nullable = false)
+  private String topic;
+
+  @NotNull
+  @Column (nullable = false)
+  @Lob
+  @Type(type = "org.hibernate.type.TextType")
+  private String payload;
+
+  @Column (nullable = false)
+  private Integer qos;
+
+  @Column (nullable = false)
+  private Integer attempts;
+
+  @Column (nullable = false)
+  private OffsetDateTime createdAt;
+
+  @Column (nullable = true)
+  private OffsetDateTime deliveredAt;
+
+  @Column (nullable = true)
+  private OffsetDateTime expiresAt;
+
+  @Column (nullable = true)
+  private OffsetDateTime deadAt;
+
+  @PrePersist
+  public void onCreate() {
+    setCreatedAt(OffsetDateTime.now());
+  }
+}
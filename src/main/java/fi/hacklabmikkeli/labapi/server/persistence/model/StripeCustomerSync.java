@@ -0,0 +1,26 @@
+package fi.hacklabmikkeli.labapi.server.persistence.model;
+
+import java.time.OffsetDateTime;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+
+import lombok.Data;
+
+/**
+ * @author Heikki Kurhinen
+ * 
+ * JPA entity for recording when local subscription copies of Stripe customer were last synchronized from Stripe API
+ */
+@Entity
+@Data
+public class StripeCustomerSync {
+
+  @Id
+  private String customerId;
+
+  @Column (nullable = false)
+  private OffsetDateTime syncedAt;
+
+}
@@ -0,0 +1,34 @@
+package fi.hacklabmikkeli.labapi.server.persistence.model;
+
+import java.time.OffsetDateTime;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.PrePersist;
+
+import lombok.Data;
+
+/**
+ * @author Heikki Kurhinen
+ * 
+ * JPA entity for storing ids of Stripe events that have already been processed
+ */
+@Entity
+@Data
+public class StripeProcessedEvent {
+
+  @Id
+  private String id;
+
+  @Column (nullable = true)
+  private String type;
+
+  @Column (nullable = false)
+  private OffsetDateTime processedAt;
+
+  @PrePersist
+  public void onCreate() {
+    setProcessedAt(OffsetDateTime.now());
+  }
+}
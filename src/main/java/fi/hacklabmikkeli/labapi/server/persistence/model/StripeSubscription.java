@@ -0,0 +1,62 @@
+package fi.hacklabmikkeli.labapi.server.persistence.model;
+
+import java.time.OffsetDateTime;
+
+import javax.persistence.Cacheable;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
+
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
+import lombok.Data;
+
+/**
+ * @author Heikki Kurhinen
+ * 
+ * JPA entity for storing local copies of Stripe subscriptions
+ */
+@Entity
+@Cacheable(true)
+@Cache(usage = CacheConcurrencyStrategy.TRANSACTIONAL)
+@Data
+public class StripeSubscription {
+
+  @Id
+  private String id;
+
+  @Column (nullable = false)
+  private String customerId;
+
+  @Column (nullable = true)
+  private String planId;
+
+  @Column (nullable = false)
+  private String status;
+
+  @Column (nullable = true)
+  private Boolean cancelAtPeriodEnd;
+
+  @Column (nullable = true)
+  private OffsetDateTime currentPeriodEnd;
+
+  @Column (nullable = false)
+  private Long sourceCreated;
+
+  @Column (nullable = false)
+  private OffsetDateTime modifiedAt;
+
+  @PrePersist
+  public void onCreate() {
+    setModifiedAt(OffsetDateTime.now());
+  }
+
+  @PreUpdate
+  public void onUpdate() {
+    setModifiedAt(OffsetDateTime.now());
+  }
+
+}
@@ -0,0 +1,70 @@
+package fi.hacklabmikkeli.labapi.server.persistence.model;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Lob;
+import javax.persistence.PrePersist;
+import javax.validation.constraints.NotNull;
+
+import org.hibernate.annotations.Type;
+import org.hibernate.validator.constraints.NotEmpty;
+
+import lombok.Data;
+
+/**
+ * @author Heikki Kurhinen
+ * 
+ * JPA entity for storing verified webhooks waiting to be processed
+ */
+@Entity
+@Data
+public class WebhookInboxMessage {
+
+  @Id
+  @Column(columnDefinition = "BINARY(16)")
+  private UUID id;
+
+  @NotNull
+  @NotEmpty
+  @Column (nullable = false)
+  private String type;
+
+  @NotNull
+  @Column (nullable = false)
+  @Lob
+  @Type(type = "org.hibernate.type.TextType")
+  private String payload;
+
+  @Column (nullable = true)
+  private String partitionKey;
+
+  @Column (nullable = false)
+  private Long sourceCreated;
+
+  @Column (nullable = false)
+  private WebhookInboxStatus status;
+
+  @Column (nullable = false)
+  private Integer attempts;
+
+  @Column (nullable = false)
+  private OffsetDateTime nextAttemptAt;
+
+  @Column (nullable = true, length = 1024)
+  private String lastError;
+
+  @Column (nullable = false)
+  private OffsetDateTime createdAt;
+
+  @Column (nullable = true)
+  private OffsetDateTime processedAt;
+
+  @PrePersist
+  public void onCreate() {
+    setCreatedAt(OffsetDateTime.now());
+  }
+}
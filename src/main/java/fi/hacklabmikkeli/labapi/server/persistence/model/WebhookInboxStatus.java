@@ -0,0 +1,17 @@
+package fi.hacklabmikkeli.labapi.server.persistence.model;
+
+/**
+ * @author Heikki Kurhinen
+ * 
+ * Enumeration describing processing status of received webhook
+ */
+public enum WebhookInboxStatus {
+
+  PENDING,
+
+  PROCESSING,
+
+  PROCESSED,
+
+  DEAD
+}
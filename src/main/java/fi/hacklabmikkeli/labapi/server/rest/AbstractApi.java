@@ -97,6 +97,20 @@ public abstract class AbstractApi {
     return getListParameter(parameter, name -> Enum.valueOf(enumType, name));
   }
 
+  /**
+   * Returns requested page of a list
+   * 
+   * @param list list
+   * @param firstResult first result to return (optional)
+   * @param maxResults max number of results to return (optional)
+   * @return page of the list
+   */
+  protected <E> List<E> getPage(List<E> list, Long firstResult, Long maxResults) {
+    int fromIndex = firstResult != null ? (int) Math.min(Math.max(firstResult, 0L), list.size()) : 0;
+    int toIndex = maxResults != null ? (int) Math.min(fromIndex + Math.max(maxResults, 0L), list.size()) : list.size();
+    return list.subList(fromIndex, toIndex);
+  }
+
   /**
    * Return current HttpServletRequest
    * 
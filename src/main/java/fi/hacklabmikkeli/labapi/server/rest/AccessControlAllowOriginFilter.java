@@ -11,7 +11,7 @@ import javax.servlet.ServletResponse;
 import javax.servlet.annotation.WebFilter;
 import javax.servlet.http.HttpServletResponse;
 
-@WebFilter (urlPatterns = "/v1/*")
+@WebFilter (urlPatterns = "/v1/*", asyncSupported = true)
 public class AccessControlAllowOriginFilter implements Filter {
   
   @Override
@@ -0,0 +1,51 @@
+package fi.hacklabmikkeli.labapi.server.rest;
+
+import java.util.List;
+
+import javax.ejb.Stateful;
+import javax.enterprise.context.RequestScoped;
+import javax.inject.Inject;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import fi.hacklabmikkeli.labapi.server.announcements.AnnouncementController;
+import fi.hacklabmikkeli.labapi.server.persistence.model.AnnouncementHeader;
+import fi.hacklabmikkeli.labapi.server.rest.translate.AnnouncementTranslator;
+
+/**
+ * Announcement summary REST services
+ * 
+ * @author Heikki Kurhinen
+ */
+@Path ("/announcements/summaries")
+@RequestScoped
+@Stateful
+@Produces (MediaType.APPLICATION_JSON)
+@Consumes (MediaType.APPLICATION_JSON)
+public class AnnouncementSummaryRESTService extends AbstractApi {
+
+  @Inject
+  private AnnouncementController announcementController;
+
+  @Inject
+  private AnnouncementTranslator announcementTranslator;
+
+  /**
+   * Lists announcements with recipient counts but without contents and recipients
+   * 
+   * @param firstResult first result to return (optional)
+   * @param maxResults max number of results to return (optional)
+   * @return list of announcement summaries
+   */
+  @GET
+  public Response listAnnouncementSummaries(@QueryParam ("firstResult") Long firstResult, @QueryParam ("maxResults") Long maxResults) {
+    List<AnnouncementHeader> announcementHeaders = announcementController.listAnnouncementHeaders(firstResult, maxResults);
+    return createOk(announcementTranslator.translateAnnouncementSummaries(announcementHeaders, announcementController.countAnnouncementRecipients(announcementHeaders)));
+  }
+
+}
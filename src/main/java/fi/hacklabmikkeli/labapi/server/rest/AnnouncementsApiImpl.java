@@ -2,7 +2,6 @@ package fi.hacklabmikkeli.labapi.server.rest;
 
 import java.util.List;
 import java.util.UUID;
-import java.util.stream.Collectors;
 
 import javax.ejb.Stateful;
 import javax.enterprise.context.RequestScoped;
@@ -76,11 +75,7 @@ public class AnnouncementsApiImpl extends AbstractApi implements AnnouncementsAp
   @Override
   public Response listAnnouncements(Long firstResult, Long maxResults) {
     List<fi.hacklabmikkeli.labapi.server.persistence.model.Announcement> announcementEntities = announcementController.listAnnouncements(firstResult, maxResults);
-    return createOk(announcementEntities.stream()
-      .map(announcementEntity -> 
-        announcementTranslator.translateAnnouncement(announcementEntity, announcementController.listAnnouncementRecipients(announcementEntity))
-      )
-      .collect(Collectors.toList()));
+    return createOk(announcementTranslator.translateAnnouncements(announcementEntities, announcementController.listAnnouncementRecipientIds(announcementEntities)));
   }
 
   /**
@@ -123,8 +118,6 @@ public class AnnouncementsApiImpl extends AbstractApi implements AnnouncementsAp
       fi.hacklabmikkeli.labapi.server.persistence.model.Announcement announcementEntity,
       List<UUID> recipientIds) {
 
-    return recipientIds.stream()
-      .map(recipientId -> announcementController.createAnnouncementRecipient(announcementEntity, recipientId))
-      .collect(Collectors.toList());
+    return announcementController.createAnnouncementRecipients(announcementEntity, recipientIds);
   }
 }
\ No newline at end of file
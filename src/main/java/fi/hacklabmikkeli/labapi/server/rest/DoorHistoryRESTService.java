@@ -0,0 +1,96 @@
+package fi.hacklabmikkeli.labapi.server.rest;
+
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.UUID;
+
+import javax.ejb.Stateful;
+import javax.enterprise.context.RequestScoped;
+import javax.inject.Inject;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import fi.hacklabmikkeli.labapi.server.doors.DoorController;
+import fi.hacklabmikkeli.labapi.server.persistence.model.Door;
+import fi.hacklabmikkeli.labapi.server.persistence.model.DoorAction;
+import fi.hacklabmikkeli.labapi.server.rest.translate.DoorTranslator;
+
+/**
+ * Door action history REST services
+ * 
+ * @author Heikki Kurhinen
+ */
+@Path ("/doors/{doorId}/history")
+@RequestScoped
+@Stateful
+@Produces (MediaType.APPLICATION_JSON)
+@Consumes (MediaType.APPLICATION_JSON)
+public class DoorHistoryRESTService extends AbstractApi {
+
+  private static final long DEFAULT_MAX_RESULTS = 50L;
+
+  private static final long MAX_MAX_RESULTS = 1000L;
+
+  @Inject
+  private DoorController doorController;
+
+  @Inject
+  private DoorTranslator doorTranslator;
+
+  /**
+   * Lists actions of door, newest first. 
+   * 
+   * Next page is requested by passing id of the last returned action as after parameter 
+   * and previous page by passing id of the first returned action as before parameter.
+   * 
+   * @param doorId door id
+   * @param after return only actions older than this action (optional)
+   * @param before return only actions newer than this action (optional)
+   * @param from return only actions created at or after this time (optional)
+   * @param to return only actions created before this time (optional)
+   * @param maxResults max number of results to return (optional)
+   * @return list of door actions
+   */
+  @GET
+  public Response listDoorHistory(@PathParam ("doorId") UUID doorId, @QueryParam ("after") UUID after, @QueryParam ("before") UUID before, 
+      @QueryParam ("from") String from, @QueryParam ("to") String to, @QueryParam ("maxResults") Long maxResults) {
+    if (!isRealmAdmin()) {
+      return createForbidden(UNAUTHORIZED);
+    }
+
+    Door doorEntity = doorController.findDoor(doorId);
+    if (doorEntity == null) {
+      return createNotFound(NOT_FOUND_MESSAGE);
+    }
+
+    DoorAction afterAction = after != null ? doorController.findDoorAction(after) : null;
+    if (after != null && (afterAction == null || !afterAction.getDoor().getId().equals(doorId))) {
+      return createBadRequest(String.format("Invalid after cursor %s", after));
+    }
+
+    DoorAction beforeAction = before != null ? doorController.findDoorAction(before) : null;
+    if (before != null && (beforeAction == null || !beforeAction.getDoor().getId().equals(doorId))) {
+      return createBadRequest(String.format("Invalid before cursor %s", before));
+    }
+
+    OffsetDateTime fromTime;
+    OffsetDateTime toTime;
+    try {
+      fromTime = parseTime(from);
+      toTime = parseTime(to);
+    } catch (DateTimeParseException e) {
+      return createBadRequest(String.format("Invalid time %s", e.getParsedString()));
+    }
+
+    long limit = maxResults != null ? Math.min(Math.max(maxResults, 0L), MAX_MAX_RESULTS) : DEFAULT_MAX_RESULTS;
+
+    return createOk(doorTranslator.translateDoorHistoryEntries(doorController.listDoorActions(doorEntity, fromTime, toTime, afterAction, beforeAction, limit)));
+  }
+
+}
@@ -0,0 +1,58 @@
+package fi.hacklabmikkeli.labapi.server.rest;
+
+import java.util.UUID;
+
+import javax.ejb.Stateful;
+import javax.enterprise.context.RequestScoped;
+import javax.inject.Inject;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import fi.hacklabmikkeli.labapi.server.doors.DoorController;
+import fi.hacklabmikkeli.labapi.server.persistence.model.Door;
+import fi.hacklabmikkeli.labapi.server.rest.translate.DoorTranslator;
+
+/**
+ * Door command latency REST services
+ * 
+ * @author Heikki Kurhinen
+ */
+@Path ("/doors/{doorId}/latency")
+@RequestScoped
+@Stateful
+@Produces (MediaType.APPLICATION_JSON)
+@Consumes (MediaType.APPLICATION_JSON)
+public class DoorLatencyRESTService extends AbstractApi {
+
+  @Inject
+  private DoorController doorController;
+
+  @Inject
+  private DoorTranslator doorTranslator;
+
+  /**
+   * Returns round trip latency percentiles of door commands
+   * 
+   * @param doorId door id
+   * @return door latency percentiles
+   */
+  @GET
+  public Response findDoorLatency(@PathParam ("doorId") UUID doorId) {
+    if (!isRealmAdmin()) {
+      return createForbidden(UNAUTHORIZED);
+    }
+
+    Door doorEntity = doorController.findDoor(doorId);
+    if (doorEntity == null) {
+      return createNotFound(NOT_FOUND_MESSAGE);
+    }
+
+    return createOk(doorTranslator.translateDoorLatency(doorController.getDoorLatencyStatistics(doorEntity)));
+  }
+
+}
@@ -0,0 +1,70 @@
+package fi.hacklabmikkeli.labapi.server.rest;
+
+import java.util.UUID;
+
+import javax.ejb.Stateful;
+import javax.enterprise.context.RequestScoped;
+import javax.inject.Inject;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import fi.hacklabmikkeli.labapi.server.doors.DoorController;
+import fi.hacklabmikkeli.labapi.server.persistence.model.Door;
+import fi.hacklabmikkeli.labapi.server.rest.translate.DoorTranslator;
+
+/**
+ * Door status REST services. 
+ * 
+ * Returns doors with their online status resolved from the door presence registry
+ * 
+ * @author Heikki Kurhinen
+ */
+@Path ("/doors/statuses")
+@RequestScoped
+@Stateful
+@Produces (MediaType.APPLICATION_JSON)
+@Consumes (MediaType.APPLICATION_JSON)
+public class DoorStatusRESTService extends AbstractApi {
+
+  @Inject
+  private DoorController doorController;
+
+  @Inject
+  private DoorTranslator doorTranslator;
+
+  /**
+   * Lists door statuses
+   * 
+   * @param firstResult first result to return (optional)
+   * @param maxResults max number of results to return (optional)
+   * @return list of door statuses
+   */
+  @GET
+  public Response listDoorStatuses(@QueryParam ("firstResult") Long firstResult, @QueryParam ("maxResults") Long maxResults) {
+    return createOk(doorTranslator.translateDoorStatuses(doorController.listDoors(firstResult, maxResults)));
+  }
+
+  /**
+   * Finds status of single door
+   * 
+   * @param doorId door id
+   * @return door status
+   */
+  @GET
+  @Path ("/{doorId}")
+  public Response findDoorStatus(@PathParam ("doorId") UUID doorId) {
+    Door doorEntity = doorController.findDoor(doorId);
+    if (doorEntity == null) {
+      return createNotFound(NOT_FOUND_MESSAGE);
+    }
+
+    return createOk(doorTranslator.translateDoorStatus(doorEntity));
+  }
+
+}
@@ -10,7 +10,7 @@ import javax.validation.Valid;
 import javax.ws.rs.core.Response;
 
 import fi.hacklabmikkeli.labapi.server.doors.DoorController;
-import fi.hacklabmikkeli.labapi.server.mqtt.MqttController;
+import fi.hacklabmikkeli.labapi.server.mqtt.MqttOutboxController;
 import fi.hacklabmikkeli.labapi.server.persistence.model.DoorActionType;
 import fi.hacklabmikkeli.labapi.server.rest.model.Door;
 import fi.hacklabmikkeli.labapi.server.rest.model.DoorAction;
@@ -34,7 +34,7 @@ public class DoorsApiImpl extends AbstractApi implements DoorsApi {
   private DoorTranslator doorTranslator;
 
   @Inject
-  private MqttController mqttController;
+  private MqttOutboxController mqttOutboxController;
 
   @Override
   public Response createDoor(@Valid Door payload) {
@@ -112,7 +112,13 @@ public class DoorsApiImpl extends AbstractApi implements DoorsApi {
   }
 
   /**
-   * Handles door opening request
+   * Handles door opening request. 
+   * 
+   * Open command is written into the MQTT outbox in the same transaction with the door action 
+   * and published with QoS 1 after the transaction has been committed. Doors that acknowledge commands 
+   * receive the door action id along with the command and send it back into door/{doorId}/ack topic, 
+   * other doors receive the plain command. Command expires when the door action times out, so a command 
+   * delayed e.g. by a broker outage never opens the door later
    * 
    * @param doorEntity door entity to open
    * 
@@ -120,7 +126,8 @@ public class DoorsApiImpl extends AbstractApi implements DoorsApi {
    */
   private Response handleDoorOpen(fi.hacklabmikkeli.labapi.server.persistence.model.Door doorEntity) {
     fi.hacklabmikkeli.labapi.server.persistence.model.DoorAction doorActionEntity =  doorController.createDoorAction(doorEntity, DoorActionType.OPEN, getLoggerUserId());
-    mqttController.publishMessage(String.format("door/%s", doorEntity.getId()), DOOR_OPEN_MESSAGE);
+    String command = doorController.isAcknowledgingDoor(doorEntity) ? String.format("%s:%s", DOOR_OPEN_MESSAGE, doorActionEntity.getId()) : DOOR_OPEN_MESSAGE;
+    mqttOutboxController.queueMessage(String.format("door/%s", doorEntity.getId()), command, 1, doorController.getDoorActionExpiresAt(doorActionEntity));
     return createOk(doorTranslator.translateDoorAction(doorActionEntity));
   }
 
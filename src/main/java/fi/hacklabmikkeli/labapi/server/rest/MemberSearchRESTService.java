@@ -0,0 +1,110 @@
+package fi.hacklabmikkeli.labapi.server.rest;
+
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.UUID;
+
+import javax.ejb.Stateful;
+import javax.enterprise.context.RequestScoped;
+import javax.inject.Inject;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import fi.hacklabmikkeli.labapi.server.members.MemberController;
+import fi.hacklabmikkeli.labapi.server.persistence.model.Member;
+import fi.hacklabmikkeli.labapi.server.persistence.model.MemberStatus;
+import fi.hacklabmikkeli.labapi.server.rest.translate.MemberTranslator;
+
+/**
+ * Member search REST services
+ * 
+ * @author Heikki Kurhinen
+ */
+@Path ("/members/search")
+@RequestScoped
+@Stateful
+@Produces (MediaType.APPLICATION_JSON)
+@Consumes (MediaType.APPLICATION_JSON)
+public class MemberSearchRESTService extends AbstractApi {
+
+  private static final long DEFAULT_MAX_RESULTS = 50L;
+
+  private static final long MAX_MAX_RESULTS = 1000L;
+
+  @Inject
+  private MemberController memberController;
+
+  @Inject
+  private MemberTranslator memberTranslator;
+
+  /**
+   * Searches members, newest first. Total number of matching members is returned in Total-Results header. 
+   * 
+   * Next page is requested by passing id of the last returned member as after parameter 
+   * and previous page by passing id of the first returned member as before parameter.
+   * 
+   * @param status comma separated list of statuses (optional)
+   * @param createdFrom return only members created at or after this time (optional)
+   * @param createdTo return only members created before this time (optional)
+   * @param approvedFrom return only members approved at or after this time (optional)
+   * @param approvedTo return only members approved before this time (optional)
+   * @param hasStripeCustomer return only members with or without stripe customer (optional)
+   * @param after return only members after this member (optional)
+   * @param before return only members before this member (optional)
+   * @param maxResults max number of results to return (optional)
+   * @return list of members
+   */
+  @GET
+  @SuppressWarnings ("squid:S00107")
+  public Response searchMembers(@QueryParam ("status") List<String> status, @QueryParam ("createdFrom") String createdFrom, @QueryParam ("createdTo") String createdTo, 
+      @QueryParam ("approvedFrom") String approvedFrom, @QueryParam ("approvedTo") String approvedTo, @QueryParam ("hasStripeCustomer") Boolean hasStripeCustomer,
+      @QueryParam ("after") UUID after, @QueryParam ("before") UUID before, @QueryParam ("maxResults") Long maxResults) {
+    if (!isRealmAdmin()) {
+      return createForbidden(UNAUTHORIZED);
+    }
+
+    List<MemberStatus> statuses;
+    try {
+      statuses = getEnumListParameter(MemberStatus.class, status);
+    } catch (IllegalArgumentException e) {
+      return createBadRequest("Invalid status");
+    }
+
+    OffsetDateTime createdFromTime;
+    OffsetDateTime createdToTime;
+    OffsetDateTime approvedFromTime;
+    OffsetDateTime approvedToTime;
+    try {
+      createdFromTime = parseTime(createdFrom);
+      createdToTime = parseTime(createdTo);
+      approvedFromTime = parseTime(approvedFrom);
+      approvedToTime = parseTime(approvedTo);
+    } catch (DateTimeParseException e) {
+      return createBadRequest(String.format("Invalid time %s", e.getParsedString()));
+    }
+
+    Member afterMember = after != null ? memberController.findMember(after) : null;
+    if (after != null && afterMember == null) {
+      return createBadRequest(String.format("Invalid after cursor %s", after));
+    }
+
+    Member beforeMember = before != null ? memberController.findMember(before) : null;
+    if (before != null && beforeMember == null) {
+      return createBadRequest(String.format("Invalid before cursor %s", before));
+    }
+
+    long limit = maxResults != null ? Math.min(Math.max(maxResults, 0L), MAX_MAX_RESULTS) : DEFAULT_MAX_RESULTS;
+
+    List<Member> members = memberController.searchMembers(statuses, createdFromTime, createdToTime, approvedFromTime, approvedToTime, hasStripeCustomer, afterMember, beforeMember, limit);
+    Long totalHits = memberController.countSearchMembers(statuses, createdFromTime, createdToTime, approvedFromTime, approvedToTime, hasStripeCustomer);
+
+    return createOk(memberTranslator.translateMembers(members), totalHits);
+  }
+
+}
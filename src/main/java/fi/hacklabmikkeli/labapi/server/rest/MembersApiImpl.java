@@ -1,23 +1,28 @@
 package fi.hacklabmikkeli.labapi.server.rest;
 
+import java.time.Instant;
 import java.time.OffsetDateTime;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 import javax.ejb.Stateful;
 import javax.enterprise.context.RequestScoped;
 import javax.inject.Inject;
 import javax.validation.Valid;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Response;
 
 import com.stripe.model.Customer;
 
 import org.apache.commons.lang3.EnumUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
 
 import fi.hacklabmikkeli.labapi.server.keycloak.KeycloakAdminController;
 import fi.hacklabmikkeli.labapi.server.members.MemberController;
 import fi.hacklabmikkeli.labapi.server.persistence.model.MemberStatus;
+import fi.hacklabmikkeli.labapi.server.persistence.model.StripeSubscription;
 import fi.hacklabmikkeli.labapi.server.rest.model.Card;
 import fi.hacklabmikkeli.labapi.server.rest.model.Member;
 import fi.hacklabmikkeli.labapi.server.rest.model.Member.StatusEnum;
@@ -26,6 +31,7 @@ import fi.hacklabmikkeli.labapi.server.rest.model.Subscription;
 import fi.hacklabmikkeli.labapi.server.rest.translate.MemberTranslator;
 import fi.hacklabmikkeli.labapi.server.rest.translate.StripeTranslator;
 import fi.hacklabmikkeli.labapi.server.stripe.StripeController;
+import fi.hacklabmikkeli.labapi.server.stripe.StripeSubscriptionController;
 
 /**
  * Members REST service implementation
@@ -36,6 +42,9 @@ import fi.hacklabmikkeli.labapi.server.stripe.StripeController;
 @Stateful
 public class MembersApiImpl extends AbstractApi implements MembersApi {
 
+  @Inject
+  private Logger logger;
+
   @Inject
   private MemberController memberController;
 
@@ -48,6 +57,9 @@ public class MembersApiImpl extends AbstractApi implements MembersApi {
   @Inject
   private StripeController stripeController;
 
+  @Inject
+  private StripeSubscriptionController stripeSubscriptionController;
+
   @Inject
   private KeycloakAdminController keycloakAdminController;
 
@@ -224,6 +236,8 @@ public class MembersApiImpl extends AbstractApi implements MembersApi {
       return createInternalServerError("Error creating subscription");
     }
 
+    storeSubscription(subscription);
+
     return createOk(stripeTranslator.translateSubscription(subscription));
   }
 
@@ -288,12 +302,32 @@ public class MembersApiImpl extends AbstractApi implements MembersApi {
       return createBadRequest("Cannot list subscriptions without stripe customer id");
     }
 
-    List<com.stripe.model.Subscription> subscriptions = stripeController.listSubscriptions(memberEntity.getStripeCustomerId());
-    if (subscriptions == null) {
-      return createInternalServerError("Error listing subscriptions");
+    String stripeCustomerId = memberEntity.getStripeCustomerId();
+    boolean noCacheRequested = isNoCacheRequested();
+    if (noCacheRequested || !stripeSubscriptionController.isCustomerSynced(stripeCustomerId)) {
+      if (noCacheRequested) {
+        stripeController.invalidateCustomer(stripeCustomerId);
+      }
+
+      long loadedAt = Instant.now().getEpochSecond();
+      List<com.stripe.model.Subscription> subscriptions = stripeController.loadCustomerSubscriptions(stripeCustomerId);
+      if (subscriptions == null) {
+        return createInternalServerError("Error listing subscriptions");
+      }
+
+      try {
+        stripeSubscriptionController.replaceCustomerSubscriptions(stripeCustomerId, subscriptions, loadedAt);
+      } catch (RuntimeException e) {
+        logger.warn("Could not store local copies of subscriptions of customer {}", stripeCustomerId, e);
+      }
+
+      return createOk(stripeTranslator.translateSubscriptions(subscriptions));
     }
 
-    return createOk(stripeTranslator.translateSubscriptions(subscriptions));
+    List<StripeSubscription> stripeSubscriptions = stripeSubscriptionController.listCustomerSubscriptions(stripeCustomerId);
+    return createOk(stripeTranslator.translateStripeSubscriptions(stripeSubscriptions.stream()
+      .filter(stripeSubscription -> !StripeSubscriptionController.STATUS_CANCELED.equals(stripeSubscription.getStatus()))
+      .collect(Collectors.toList())));
   }
 
   @Override
@@ -316,6 +350,33 @@ public class MembersApiImpl extends AbstractApi implements MembersApi {
       return createInternalServerError("Error updating subscription");
     }
 
+    storeSubscription(subscription);
+
     return createOk(stripeTranslator.translateSubscription(subscription));
   }
-}
\ No newline at end of file
+
+  /**
+   * Returns whether client asked to bypass local copies with Cache-Control: no-cache header
+   * 
+   * @return whether client asked to bypass local copies
+   */
+  private boolean isNoCacheRequested() {
+    return StringUtils.containsIgnoreCase(getHttpServletRequest().getHeader(HttpHeaders.CACHE_CONTROL), "no-cache");
+  }
+
+  /**
+   * Stores local copy of subscription returned by Stripe. 
+   * 
+   * Subscription already exists in Stripe, so failing to store the copy must not fail the request. 
+   * Subscription webhook stores the copy if this write loses a race with it
+   * 
+   * @param subscription Stripe subscription
+   */
+  private void storeSubscription(com.stripe.model.Subscription subscription) {
+    try {
+      stripeSubscriptionController.upsertSubscription(subscription);
+    } catch (RuntimeException e) {
+      logger.warn("Could not store local copy of subscription {}", subscription.getId(), e);
+    }
+  }
+}
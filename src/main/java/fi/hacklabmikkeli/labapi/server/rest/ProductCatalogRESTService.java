@@ -0,0 +1,51 @@
+package fi.hacklabmikkeli.labapi.server.rest;
+
+import java.util.List;
+
+import javax.ejb.Stateful;
+import javax.enterprise.context.RequestScoped;
+import javax.inject.Inject;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import fi.hacklabmikkeli.labapi.server.rest.translate.StripeTranslator;
+import fi.hacklabmikkeli.labapi.server.stripe.StripeController;
+
+/**
+ * Product catalog REST services
+ * 
+ * @author Heikki Kurhinen
+ */
+@Path ("/products/catalog")
+@RequestScoped
+@Stateful
+@Produces (MediaType.APPLICATION_JSON)
+@Consumes (MediaType.APPLICATION_JSON)
+public class ProductCatalogRESTService extends AbstractApi {
+
+  @Inject
+  private StripeTranslator stripeTranslator;
+
+  @Inject
+  private StripeController stripeController;
+
+  /**
+   * Lists active products with their plans
+   * 
+   * @return list of products with embedded plans
+   */
+  @GET
+  public Response listProductCatalog() {
+    List<com.stripe.model.Plan> planModels = stripeController.listCatalogPlans();
+    if (planModels == null) {
+      return createNotFound(NOT_FOUND_MESSAGE);
+    }
+
+    return createOk(stripeTranslator.translateProductCatalog(planModels));
+  }
+
+}
@@ -32,7 +32,7 @@ public class ProductsApiImpl extends AbstractApi implements ProductsApi {
       return createNotFound(NOT_FOUND_MESSAGE);
     }
 
-    return createOk(stripeTranslator.translatePlans(planModels));
+    return createOk(stripeTranslator.translatePlans(getPage(planModels, firstResult, maxResults)), (long) planModels.size());
   }
 
   @Override
@@ -42,7 +42,7 @@ public class ProductsApiImpl extends AbstractApi implements ProductsApi {
       return createNotFound(NOT_FOUND_MESSAGE);
     }
 
-    return createOk(stripeTranslator.translateProducts(productModels));
+    return createOk(stripeTranslator.translateProducts(getPage(productModels, firstResult, maxResults)), (long) productModels.size());
   }
 
 }
\ No newline at end of file
@@ -0,0 +1,48 @@
+package fi.hacklabmikkeli.labapi.server.rest;
+
+import javax.ejb.Stateful;
+import javax.enterprise.context.RequestScoped;
+import javax.inject.Inject;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import fi.hacklabmikkeli.labapi.server.rest.translate.StripeTranslator;
+import fi.hacklabmikkeli.labapi.server.stripe.StripeSubscriptionController;
+
+/**
+ * Subscription reporting REST services
+ * 
+ * @author Heikki Kurhinen
+ */
+@Path ("/subscriptions/summary")
+@RequestScoped
+@Stateful
+@Produces (MediaType.APPLICATION_JSON)
+@Consumes (MediaType.APPLICATION_JSON)
+public class SubscriptionSummaryRESTService extends AbstractApi {
+
+  @Inject
+  private StripeSubscriptionController stripeSubscriptionController;
+
+  @Inject
+  private StripeTranslator stripeTranslator;
+
+  /**
+   * Returns number of subscriptions by plan and status from local subscription copies
+   * 
+   * @return subscription counts
+   */
+  @GET
+  public Response listSubscriptionSummaries() {
+    if (!isRealmAdmin()) {
+      return createForbidden(UNAUTHORIZED);
+    }
+
+    return createOk(stripeTranslator.translateSubscriptionSummaries(stripeSubscriptionController.countSubscriptions()));
+  }
+
+}
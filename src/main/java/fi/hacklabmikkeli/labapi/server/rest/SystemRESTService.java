@@ -1,11 +1,13 @@
 package fi.hacklabmikkeli.labapi.server.rest;
 
 import javax.enterprise.context.RequestScoped;
+import javax.inject.Inject;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.PersistenceUnit;
 import javax.servlet.http.HttpServletRequest;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.GET;
+import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.core.Context;
@@ -13,6 +15,11 @@ import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
 
+import fi.hacklabmikkeli.labapi.server.doors.DoorMqttListener;
+import fi.hacklabmikkeli.labapi.server.keycloak.KeycloakAdminController;
+import fi.hacklabmikkeli.labapi.server.mqtt.MqttDispatcher;
+import fi.hacklabmikkeli.labapi.server.stripe.StripeEventDeduplicator;
+
 /**
  * System REST Services
  * 
@@ -23,11 +30,23 @@ import javax.ws.rs.core.Response.Status;
 @RequestScoped
 @Produces (MediaType.APPLICATION_JSON)
 @Consumes (MediaType.APPLICATION_JSON)
-public class SystemRESTService {
+public class SystemRESTService extends AbstractApi {
   
   @PersistenceUnit
   private EntityManagerFactory entityManagerFactory;
 
+  @Inject
+  private MqttDispatcher mqttDispatcher;
+
+  @Inject
+  private DoorMqttListener doorMqttListener;
+
+  @Inject
+  private KeycloakAdminController keycloakAdminController;
+
+  @Inject
+  private StripeEventDeduplicator stripeEventDeduplicator;
+
   /**
    * Returns pong
    * 
@@ -56,4 +75,66 @@ public class SystemRESTService {
     
     return Response.status(Status.FORBIDDEN).build();
   }
+
+  /**
+   * Returns MQTT dispatcher queue depth and processing time metrics
+   * 
+   * @return MQTT dispatcher metrics
+   */
+  @GET
+  @Path ("/mqtt/metrics")
+  public Response getMqttMetrics() {
+    if (!isRealmAdmin()) {
+      return createForbidden(UNAUTHORIZED);
+    }
+
+    return Response.ok(mqttDispatcher.getMetrics()).build();
+  }
+
+  /**
+   * Returns counts of accepted and rejected door pings
+   * 
+   * @return door ping metrics
+   */
+  @GET
+  @Path ("/doors/pings/metrics")
+  public Response getDoorPingMetrics() {
+    if (!isRealmAdmin()) {
+      return createForbidden(UNAUTHORIZED);
+    }
+
+    return Response.ok(doorMqttListener.getMetrics()).build();
+  }
+
+  /**
+   * Flushes cached Keycloak realm role representations
+   * 
+   * @return "ok"
+   */
+  @POST
+  @Path ("/keycloak/roles/cache/flush")
+  @Produces (MediaType.TEXT_PLAIN)
+  public Response flushKeycloakRoleCache() {
+    if (!isRealmAdmin()) {
+      return Response.status(Status.FORBIDDEN).build();
+    }
+
+    keycloakAdminController.invalidateRealmRoles();
+    return Response.ok("ok").build();
+  }
+
+  /**
+   * Returns Stripe webhook deduplication hit counts and hit rate
+   * 
+   * @return webhook deduplication metrics
+   */
+  @GET
+  @Path ("/webhooks/dedup")
+  public Response getWebhookDedupMetrics() {
+    if (!isRealmAdmin()) {
+      return createForbidden(UNAUTHORIZED);
+    }
+
+    return Response.ok(stripeEventDeduplicator.getMetrics()).build();
+  }
 }
@@ -0,0 +1,24 @@
+package fi.hacklabmikkeli.labapi.server.rest.custom;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+import lombok.Data;
+
+/**
+ * REST model for announcement listing without content and recipients
+ * 
+ * @author Heikki Kurhinen
+ */
+@Data
+public class AnnouncementSummary {
+
+  private UUID id;
+
+  private String type;
+
+  private OffsetDateTime createdAt;
+
+  private Long recipientCount;
+
+}
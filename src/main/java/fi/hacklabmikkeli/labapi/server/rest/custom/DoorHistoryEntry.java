@@ -0,0 +1,32 @@
+package fi.hacklabmikkeli.labapi.server.rest.custom;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+import lombok.Data;
+
+/**
+ * REST model for single entry of door action history
+ * 
+ * @author Heikki Kurhinen
+ */
+@Data
+public class DoorHistoryEntry {
+
+  private UUID id;
+
+  private UUID doorId;
+
+  private UUID userId;
+
+  private String type;
+
+  private String status;
+
+  private OffsetDateTime createdAt;
+
+  private OffsetDateTime acknowledgedAt;
+
+  private Long latency;
+
+}
@@ -0,0 +1,29 @@
+package fi.hacklabmikkeli.labapi.server.rest.custom;
+
+import java.util.UUID;
+
+import lombok.Data;
+
+/**
+ * REST model for door command round trip latency percentiles. Latencies are in milliseconds
+ * 
+ * @author Heikki Kurhinen
+ */
+@Data
+public class DoorLatency {
+
+  private UUID doorId;
+
+  private Integer sampleSize;
+
+  private Long timedOut;
+
+  private Long p50;
+
+  private Long p90;
+
+  private Long p99;
+
+  private Long max;
+
+}
@@ -0,0 +1,24 @@
+package fi.hacklabmikkeli.labapi.server.rest.custom;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+import lombok.Data;
+
+/**
+ * REST model for door presence status
+ * 
+ * @author Heikki Kurhinen
+ */
+@Data
+public class DoorStatus {
+
+  private UUID id;
+
+  private String name;
+
+  private Boolean online;
+
+  private OffsetDateTime lastPing;
+
+}
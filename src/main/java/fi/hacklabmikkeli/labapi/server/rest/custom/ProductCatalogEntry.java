@@ -0,0 +1,21 @@
+package fi.hacklabmikkeli.labapi.server.rest.custom;
+
+import java.util.List;
+
+import fi.hacklabmikkeli.labapi.server.rest.model.Plan;
+import fi.hacklabmikkeli.labapi.server.rest.model.Product;
+import lombok.Data;
+
+/**
+ * REST model for product catalog entry. Contains product with its plans
+ * 
+ * @author Heikki Kurhinen
+ */
+@Data
+public class ProductCatalogEntry {
+
+  private Product product;
+
+  private List<Plan> plans;
+
+}
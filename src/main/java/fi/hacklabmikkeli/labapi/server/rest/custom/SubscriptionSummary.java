@@ -0,0 +1,19 @@
+package fi.hacklabmikkeli.labapi.server.rest.custom;
+
+import lombok.Data;
+
+/**
+ * REST model for number of subscriptions with given plan and status
+ * 
+ * @author Heikki Kurhinen
+ */
+@Data
+public class SubscriptionSummary {
+
+  private String planId;
+
+  private String status;
+
+  private Long count;
+
+}
@@ -1,12 +1,17 @@
 package fi.hacklabmikkeli.labapi.server.rest.translate;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 import java.util.stream.Collectors;
 
 import javax.enterprise.context.ApplicationScoped;
 
+import fi.hacklabmikkeli.labapi.server.persistence.model.AnnouncementHeader;
 import fi.hacklabmikkeli.labapi.server.persistence.model.AnnouncementRecipient;
+import fi.hacklabmikkeli.labapi.server.rest.custom.AnnouncementSummary;
 import fi.hacklabmikkeli.labapi.server.rest.model.Announcement;
 import fi.hacklabmikkeli.labapi.server.rest.model.Announcement.TypeEnum;
 
@@ -29,11 +34,59 @@ public class AnnouncementTranslator extends AbstractTranslator {
       fi.hacklabmikkeli.labapi.server.persistence.model.Announcement announcementEntity, 
       List<AnnouncementRecipient> announcementRecipientEntities) {
 
+    return translateAnnouncementWithRecipientIds(announcementEntity, announcementRecipientEntities.stream().map(AnnouncementRecipient::getRecipientId).collect(Collectors.toList()));
+  }
+
+  /**
+   * Translates Announcement entity to Announcement REST model
+   * 
+   * @param announcementEntity Announcement JPA entity
+   * @param recipientIds user ids of the recipients
+   * @return translated Announcement REST model
+   */
+  public Announcement translateAnnouncementWithRecipientIds(
+      fi.hacklabmikkeli.labapi.server.persistence.model.Announcement announcementEntity, 
+      List<UUID> recipientIds) {
+
     Announcement announcement = new Announcement();
     announcement.setId(announcementEntity.getId());
     announcement.setContent(announcementEntity.getContent());
     announcement.setType(translateEnum(TypeEnum.class, announcementEntity.getType()));
-    announcement.setRecipients(announcementRecipientEntities.stream().map(AnnouncementRecipient::getRecipientId).collect(Collectors.toList()));
+    announcement.setRecipients(recipientIds);
     return announcement;
   }
+
+  /**
+   * Translates list of Announcement entities to Announcement REST models
+   * 
+   * @param announcementEntities Announcement JPA entities
+   * @param recipientIds user ids of the recipients mapped by announcement id
+   * @return translated Announcement REST models
+   */
+  public List<Announcement> translateAnnouncements(
+      List<fi.hacklabmikkeli.labapi.server.persistence.model.Announcement> announcementEntities, 
+      Map<UUID, List<UUID>> recipientIds) {
+
+    return announcementEntities.stream()
+      .map(announcementEntity -> translateAnnouncementWithRecipientIds(announcementEntity, recipientIds.getOrDefault(announcementEntity.getId(), Collections.emptyList())))
+      .collect(Collectors.toList());
+  }
+
+  /**
+   * Translates announcement headers to AnnouncementSummary REST models
+   * 
+   * @param announcementHeaders announcement headers
+   * @param recipientCounts recipient counts mapped by announcement id
+   * @return translated AnnouncementSummary REST models
+   */
+  public List<AnnouncementSummary> translateAnnouncementSummaries(List<AnnouncementHeader> announcementHeaders, Map<UUID, Long> recipientCounts) {
+    return announcementHeaders.stream().map(announcementHeader -> {
+      AnnouncementSummary announcementSummary = new AnnouncementSummary();
+      announcementSummary.setId(announcementHeader.getId());
+      announcementSummary.setType(announcementHeader.getType() != null ? announcementHeader.getType().name() : null);
+      announcementSummary.setCreatedAt(announcementHeader.getCreatedAt());
+      announcementSummary.setRecipientCount(recipientCounts.getOrDefault(announcementHeader.getId(), 0L));
+      return announcementSummary;
+    }).collect(Collectors.toList());
+  }
 }
\ No newline at end of file
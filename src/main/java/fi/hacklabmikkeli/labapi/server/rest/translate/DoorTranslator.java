@@ -1,10 +1,18 @@
 package fi.hacklabmikkeli.labapi.server.rest.translate;
 
+import java.time.OffsetDateTime;
 import java.util.List;
 import java.util.stream.Collectors;
 
 import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
 
+import fi.hacklabmikkeli.labapi.server.doors.DoorLatencyStatistics;
+import fi.hacklabmikkeli.labapi.server.doors.DoorPingBuffer;
+import fi.hacklabmikkeli.labapi.server.doors.DoorPresenceRegistry;
+import fi.hacklabmikkeli.labapi.server.rest.custom.DoorHistoryEntry;
+import fi.hacklabmikkeli.labapi.server.rest.custom.DoorLatency;
+import fi.hacklabmikkeli.labapi.server.rest.custom.DoorStatus;
 import fi.hacklabmikkeli.labapi.server.rest.model.Door;
 import fi.hacklabmikkeli.labapi.server.rest.model.DoorAction;
 import fi.hacklabmikkeli.labapi.server.rest.model.DoorAction.TypeEnum;
@@ -17,6 +25,12 @@ import fi.hacklabmikkeli.labapi.server.rest.model.DoorAction.TypeEnum;
 @ApplicationScoped
 public class DoorTranslator extends AbstractTranslator {
 
+  @Inject
+  private DoorPingBuffer doorPingBuffer;
+
+  @Inject
+  private DoorPresenceRegistry doorPresenceRegistry;
+
   /**
    * Translates Door entity to Door REST model
    * 
@@ -27,7 +41,7 @@ public class DoorTranslator extends AbstractTranslator {
     Door door = new Door();
     door.setId(doorEntity.getId());
     door.setName(doorEntity.getName());
-    door.setLastPing(doorEntity.getLastPing());
+    door.setLastPing(doorPingBuffer.getLastPing(doorEntity.getId(), doorEntity.getLastPing()));
     return door;
   }
 
@@ -42,6 +56,52 @@ public class DoorTranslator extends AbstractTranslator {
     return doorEntities.stream().map(this::translateDoor).collect(Collectors.toList());
   }
 
+  /**
+   * Translates Door entity into DoorStatus REST model. Online flag is resolved from the presence registry
+   * 
+   * @param doorEntity Door JPA entity
+   * @return translated DoorStatus REST model
+   */
+  public DoorStatus translateDoorStatus(fi.hacklabmikkeli.labapi.server.persistence.model.Door doorEntity) {
+    OffsetDateTime lastPing = doorPingBuffer.getLastPing(doorEntity.getId(), doorEntity.getLastPing());
+
+    DoorStatus doorStatus = new DoorStatus();
+    doorStatus.setId(doorEntity.getId());
+    doorStatus.setName(doorEntity.getName());
+    doorStatus.setLastPing(lastPing);
+    doorStatus.setOnline(doorPresenceRegistry.isOnline(doorEntity.getId(), lastPing));
+    return doorStatus;
+  }
+
+  /**
+   * Tranlastes list of Door entities into DoorStatus REST models
+   *
+   * @param doorEntities Door JPA entities 
+   *  
+   * @return list of translated DoorStatus REST models
+   */
+  public List<DoorStatus> translateDoorStatuses(List<fi.hacklabmikkeli.labapi.server.persistence.model.Door> doorEntities) {
+    return doorEntities.stream().map(this::translateDoorStatus).collect(Collectors.toList());
+  }
+
+  /**
+   * Translates door latency statistics into DoorLatency REST model
+   * 
+   * @param statistics door latency statistics
+   * @return translated DoorLatency REST model
+   */
+  public DoorLatency translateDoorLatency(DoorLatencyStatistics statistics) {
+    DoorLatency doorLatency = new DoorLatency();
+    doorLatency.setDoorId(statistics.getDoorId());
+    doorLatency.setSampleSize(statistics.getSampleSize());
+    doorLatency.setTimedOut(statistics.getTimedOut());
+    doorLatency.setP50(statistics.getP50());
+    doorLatency.setP90(statistics.getP90());
+    doorLatency.setP99(statistics.getP99());
+    doorLatency.setMax(statistics.getMax());
+    return doorLatency;
+  }
+
   /**
    * Translates DoorAction entity into DoorAction REST model
    *
@@ -55,4 +115,35 @@ public class DoorTranslator extends AbstractTranslator {
     return doorAction;
   }
 
-}
\ No newline at end of file
+  /**
+   * Translates DoorAction entity into DoorHistoryEntry REST model
+   *
+   * @param doorActionEntity DoorAction JPA entity 
+   * 
+   * @return translated DoorHistoryEntry REST model
+   */
+  public DoorHistoryEntry translateDoorHistoryEntry(fi.hacklabmikkeli.labapi.server.persistence.model.DoorAction doorActionEntity) {
+    DoorHistoryEntry entry = new DoorHistoryEntry();
+    entry.setId(doorActionEntity.getId());
+    entry.setDoorId(doorActionEntity.getDoor().getId());
+    entry.setUserId(doorActionEntity.getUserId());
+    entry.setType(doorActionEntity.getType() != null ? doorActionEntity.getType().name() : null);
+    entry.setStatus(doorActionEntity.getStatus() != null ? doorActionEntity.getStatus().name() : null);
+    entry.setCreatedAt(doorActionEntity.getCreatedAt());
+    entry.setAcknowledgedAt(doorActionEntity.getAcknowledgedAt());
+    entry.setLatency(doorActionEntity.getLatency());
+    return entry;
+  }
+
+  /**
+   * Translates list of DoorAction entities into DoorHistoryEntry REST models
+   *
+   * @param doorActionEntities DoorAction JPA entities 
+   *  
+   * @return list of translated DoorHistoryEntry REST models
+   */
+  public List<DoorHistoryEntry> translateDoorHistoryEntries(List<fi.hacklabmikkeli.labapi.server.persistence.model.DoorAction> doorActionEntities) {
+    return doorActionEntities.stream().map(this::translateDoorHistoryEntry).collect(Collectors.toList());
+  }
+
+}
@@ -1,15 +1,22 @@
 package fi.hacklabmikkeli.labapi.server.rest.translate;
 
 import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 import javax.enterprise.context.ApplicationScoped;
 
+import fi.hacklabmikkeli.labapi.server.persistence.model.StripeSubscription;
+import fi.hacklabmikkeli.labapi.server.rest.custom.ProductCatalogEntry;
+import fi.hacklabmikkeli.labapi.server.rest.custom.SubscriptionSummary;
 import fi.hacklabmikkeli.labapi.server.rest.model.Card;
 import fi.hacklabmikkeli.labapi.server.rest.model.Plan;
 import fi.hacklabmikkeli.labapi.server.rest.model.Product;
 import fi.hacklabmikkeli.labapi.server.rest.model.Subscription;
+import fi.hacklabmikkeli.labapi.server.stripe.StripeSubscriptionCount;
 
 /**
  * Translates Stripe entites to lab api REST entities
@@ -78,6 +85,34 @@ public class StripeTranslator extends AbstractTranslator {
     return planModels.stream().map(this::translatePlan).collect(Collectors.toList());
   }
 
+  /**
+   * Translates list of Stripe plans with expanded products into product catalog. 
+   * 
+   * Plans are grouped by their product. Plans of inactive products are left out
+   * 
+   * @param planModels list of stripe plans with expanded products
+   * @return list of catalog entries in the order the products first appear in the plans
+   */
+  public List<ProductCatalogEntry> translateProductCatalog(List<com.stripe.model.Plan> planModels) {
+    Map<String, ProductCatalogEntry> entries = new LinkedHashMap<>();
+
+    for (com.stripe.model.Plan planModel : planModels) {
+      com.stripe.model.Product productModel = planModel.getProductObject();
+      if (productModel == null || !Boolean.TRUE.equals(productModel.getActive())) {
+        continue;
+      }
+
+      entries.computeIfAbsent(productModel.getId(), productId -> {
+        ProductCatalogEntry entry = new ProductCatalogEntry();
+        entry.setProduct(translateProduct(productModel));
+        entry.setPlans(new ArrayList<>());
+        return entry;
+      }).getPlans().add(translatePlan(planModel));
+    }
+
+    return new ArrayList<>(entries.values());
+  }
+
   /**
    * Translates Stripe card into lab api rest card
    * 
@@ -132,6 +167,47 @@ public class StripeTranslator extends AbstractTranslator {
     return subscriptionModels.stream().map(this::translateSubscription).collect(Collectors.toList());
   }
 
+  /**
+   * Translates local subscription copy into lab api rest subscription
+   * 
+   * @param stripeSubscription local subscription copy
+   * @return translated lap api rest subscription
+   */
+  public Subscription translateStripeSubscription(StripeSubscription stripeSubscription) {
+    Subscription result = new Subscription();
+    result.setCancelAtPeriodEnd(stripeSubscription.getCancelAtPeriodEnd());
+    result.setId(stripeSubscription.getId());
+    result.setPlanId(stripeSubscription.getPlanId());
+    
+    return result;
+  }
+
+  /**
+   * Translates list of local subscription copies into lab api rest subcscriptions
+   * 
+   * @param stripeSubscriptions list of local subscription copies
+   * @return list of translated lab api rest subscriptions
+   */
+  public List<Subscription> translateStripeSubscriptions(List<StripeSubscription> stripeSubscriptions) {
+    return stripeSubscriptions.stream().map(this::translateStripeSubscription).collect(Collectors.toList());
+  }
+
+  /**
+   * Translates subscription counts into SubscriptionSummary rest entities
+   * 
+   * @param counts subscription counts
+   * @return list of translated SubscriptionSummary rest entities
+   */
+  public List<SubscriptionSummary> translateSubscriptionSummaries(List<StripeSubscriptionCount> counts) {
+    return counts.stream().map(count -> {
+      SubscriptionSummary result = new SubscriptionSummary();
+      result.setPlanId(count.getPlanId());
+      result.setStatus(count.getStatus());
+      result.setCount(count.getCount());
+      return result;
+    }).collect(Collectors.toList());
+  }
+
   /**
    * Converts amount in cents into string formatted with 2 decimals
    * 
@@ -0,0 +1,79 @@
+package fi.hacklabmikkeli.labapi.server.settings;
+
+import org.apache.commons.lang3.BooleanUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+
+/**
+ * Immutable cache entry for system setting. 
+ * 
+ * Holds the raw setting value and its pre-parsed representations
+ */
+class CachedSetting {
+
+  private final String value;
+
+  private final Integer integerValue;
+
+  private final boolean booleanValue;
+
+  private final String[] values;
+
+  /**
+   * Constructor
+   * 
+   * @param value raw setting value or null if setting is not defined
+   */
+  CachedSetting(String value) {
+    this.value = value;
+    this.integerValue = parseInteger(value);
+    this.booleanValue = BooleanUtils.toBoolean(value);
+    this.values = StringUtils.split(value, ',');
+  }
+
+  /**
+   * @return raw setting value or null if setting is not defined
+   */
+  public String getValue() {
+    return value;
+  }
+
+  /**
+   * @return setting value as integer or null if setting is not defined or is not an integer
+   */
+  public Integer getIntegerValue() {
+    return integerValue;
+  }
+
+  /**
+   * @return setting value as boolean
+   */
+  public boolean getBooleanValue() {
+    return booleanValue;
+  }
+
+  /**
+   * Returns comma delimitered setting value as an array. Returned array is shared and must not be modified
+   * 
+   * @return setting values or null if setting is not defined
+   */
+  public String[] getValues() {
+    return values;
+  }
+
+  /**
+   * Parses integer from string
+   * 
+   * @param value string
+   * @return integer or null if value is not valid integer
+   */
+  @SuppressWarnings ("squid:S1166")
+  private static Integer parseInteger(String value) {
+    try {
+      return NumberUtils.createInteger(value);
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+}
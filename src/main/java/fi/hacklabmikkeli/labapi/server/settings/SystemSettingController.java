@@ -1,16 +1,21 @@
 package fi.hacklabmikkeli.labapi.server.settings;
 
-import java.util.HashMap;
-import java.util.List;
+import java.util.Collections;
 import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
+import javax.annotation.Resource;
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
 
-import org.apache.commons.lang3.BooleanUtils;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.commons.lang3.math.NumberUtils;
 import org.slf4j.Logger;
 
 import fi.hacklabmikkeli.labapi.server.persistence.dao.SystemSettingDAO;
@@ -19,17 +24,34 @@ import fi.hacklabmikkeli.labapi.server.persistence.model.SystemSetting;
 /**
  * Controller for system settings.
  * 
-
+ * Setting values are cached in memory. Cache is invalidated when settings are changed through 
+ * this controller and when another node bumps the settings version stamp.
  */
 @ApplicationScoped
 public class SystemSettingController {
   
+  private static final String SETTINGS_VERSION_KEY = "system-settings-version";
+  private static final long VERSION_CHECK_INTERVAL = 10000l;
+  
   @Inject
   private Logger logger;
 
   @Inject
   private SystemSettingDAO systemSettingDAO;
   
+  @Resource
+  private TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+  
+  private final Map<String, CachedSetting> settingCache = new ConcurrentHashMap<>();
+  
+  private final Map<String, SortedMap<String, String>> prefixCache = new ConcurrentHashMap<>();
+  
+  private final AtomicLong cacheGeneration = new AtomicLong();
+  
+  private volatile String settingsVersion;
+  
+  private volatile long versionCheckedAt;
+  
   /**
    * Returns system setting by key or defaultValue if setting is not defined
    * 
@@ -37,9 +59,9 @@ public class SystemSettingController {
    * @return setting value
    */
   public String getSettingValue(String key, String defaultValue) {
-    SystemSetting systemSetting = systemSettingDAO.findByKey(key);
-    if (systemSetting != null) {
-      return systemSetting.getValue();
+    String result = getCachedSetting(key).getValue();
+    if (result != null) {
+      return result;
     }
     
     return defaultValue;
@@ -62,13 +84,12 @@ public class SystemSettingController {
    * @return setting value
    */
   public String[] getSettingValues(String key, String[] defaultValue) {
-    String value = getSettingValue(key);
-    String[] result = StringUtils.split(value, ',');
+    String[] result = getCachedSetting(key).getValues();
     if (result == null) {
       return defaultValue;
     }
     
-    return result;
+    return result.clone();
   }
   
   /**
@@ -90,7 +111,7 @@ public class SystemSettingController {
   public void setSettingValue(String key, String value) {
     SystemSetting systemSetting = systemSettingDAO.findByKey(key);
     if (systemSetting != null) {
-      systemSettingDAO.updateValue(systemSetting, value);
+      updateSystemSetting(systemSetting, value);
     } else {
       createSystemSetting(key, value);
     }
@@ -114,12 +135,9 @@ public class SystemSettingController {
    * @return setting value
    */
   public Integer getSettingValueInteger(String key, Integer defaultValue) {
-    SystemSetting systemSetting = systemSettingDAO.findByKey(key);
-    if (systemSetting != null) {
-      Integer result = NumberUtils.createInteger(systemSetting.getValue());
-      if (result != null) {
-        return result;
-      }
+    Integer result = getCachedSetting(key).getIntegerValue();
+    if (result != null) {
+      return result;
     }
     
     return defaultValue;
@@ -143,9 +161,9 @@ public class SystemSettingController {
    * @return setting value
    */
   public boolean getSettingValueBoolean(String key, Boolean defaultValue) {
-    SystemSetting systemSetting = systemSettingDAO.findByKey(key);
-    if (systemSetting != null) {
-      return BooleanUtils.toBoolean(systemSetting.getValue());
+    CachedSetting cachedSetting = getCachedSetting(key);
+    if (cachedSetting.getValue() != null) {
+      return cachedSetting.getBooleanValue();
     }
     
     return defaultValue;
@@ -160,7 +178,9 @@ public class SystemSettingController {
    * @return SystemSetting
    */
   public SystemSetting createSystemSetting(String key, String value) {
-    return systemSettingDAO.create(UUID.randomUUID(), key, value);
+    SystemSetting result = systemSettingDAO.create(UUID.randomUUID(), key, value);
+    settingsChanged();
+    return result;
   }
   
   /**
@@ -177,7 +197,9 @@ public class SystemSettingController {
       return null;
     }
     
-    return systemSettingDAO.updateValue(systemSetting, value);
+    SystemSetting result = systemSettingDAO.updateValue(systemSetting, value);
+    settingsChanged();
+    return result;
   }
   
   /**
@@ -207,6 +229,7 @@ public class SystemSettingController {
    */
   public void deleteSystemSetting(SystemSetting systemSetting) {
     systemSettingDAO.delete(systemSetting);
+    settingsChanged();
   }
   
   /**
@@ -220,22 +243,149 @@ public class SystemSettingController {
   }
 
   /**
-   * Returns system settings as key - value pairs where keys start with prefix
+   * Returns system settings as key - value pairs where keys start with prefix. 
+   * 
+   * Returned map is immutable, sorted by key and shared between callers. Results are served from 
+   * a previously loaded sorted view when one with a shorter prefix exists, otherwise the settings 
+   * are queried from the database by the prefix.
    * 
    * @param prefix prefix
    * @return Returns system settings as key - value pairs
    */
   public Map<String, String> getSettingsWithPrefix(String prefix) {
-    Map<String, String> result = new HashMap<>();
+    if (prefix == null) {
+      return Collections.emptyMap();
+    }
     
-    List<SystemSetting> systemSettings = systemSettingDAO.listAll();
-    for (SystemSetting systemSetting : systemSettings) {
-      if (StringUtils.startsWith(systemSetting.getKey(), prefix)) {
-        result.put(systemSetting.getKey(), systemSetting.getValue());
+    checkSettingsVersion();
+    
+    SortedMap<String, String> result = prefixCache.get(prefix);
+    if (result != null) {
+      return result;
+    }
+    
+    long generation = cacheGeneration.get();
+    
+    for (int length = prefix.length() - 1; length >= 0; length--) {
+      SortedMap<String, String> parent = prefixCache.get(prefix.substring(0, length));
+      if (parent != null) {
+        result = parent.subMap(prefix, prefix + Character.MAX_VALUE);
+        break;
       }
     }
     
+    if (result == null) {
+      SortedMap<String, String> settings = new TreeMap<>();
+      for (SystemSetting systemSetting : systemSettingDAO.listByKeyPrefix(prefix)) {
+        if (StringUtils.startsWith(systemSetting.getKey(), prefix)) {
+          settings.put(systemSetting.getKey(), systemSetting.getValue());
+        }
+      }
+      
+      result = Collections.unmodifiableSortedMap(settings);
+    }
+    
+    prefixCache.put(prefix, result);
+    if (generation != cacheGeneration.get()) {
+      prefixCache.remove(prefix, result);
+    }
+    
     return result;
   }
   
+  /**
+   * Returns cached setting by key. Setting is loaded from the database if it is not already cached
+   * 
+   * @param key system setting key
+   * @return cached setting. Never null, value of the returned setting is null if setting is not defined
+   */
+  private CachedSetting getCachedSetting(String key) {
+    checkSettingsVersion();
+    
+    CachedSetting result = settingCache.get(key);
+    if (result != null) {
+      return result;
+    }
+    
+    long generation = cacheGeneration.get();
+    SystemSetting systemSetting = systemSettingDAO.findByKey(key);
+    result = new CachedSetting(systemSetting != null ? systemSetting.getValue() : null);
+    
+    settingCache.put(key, result);
+    if (generation != cacheGeneration.get()) {
+      settingCache.remove(key, result);
+    }
+    
+    return result;
+  }
+  
+  /**
+   * Clears the cache if settings version stamp has been changed by another node. 
+   * 
+   * Version stamp is checked at most once in VERSION_CHECK_INTERVAL
+   */
+  private void checkSettingsVersion() {
+    long now = System.currentTimeMillis();
+    if (now - versionCheckedAt < VERSION_CHECK_INTERVAL) {
+      return;
+    }
+    
+    versionCheckedAt = now;
+    
+    SystemSetting versionSetting = systemSettingDAO.findByKey(SETTINGS_VERSION_KEY);
+    String version = versionSetting != null ? versionSetting.getValue() : null;
+    if (!StringUtils.equals(version, settingsVersion)) {
+      settingsVersion = version;
+      invalidateCache();
+    }
+  }
+  
+  /**
+   * Bumps the settings version stamp and invalidates the cache. 
+   * 
+   * If called within a transaction the cache is invalidated again after the transaction completes, 
+   * so that values read by concurrent requests before the commit do not remain in the cache.
+   */
+  private void settingsChanged() {
+    String version = UUID.randomUUID().toString();
+    SystemSetting versionSetting = systemSettingDAO.findByKey(SETTINGS_VERSION_KEY);
+    if (versionSetting != null) {
+      systemSettingDAO.updateValue(versionSetting, version);
+    } else {
+      systemSettingDAO.create(UUID.randomUUID(), SETTINGS_VERSION_KEY, version);
+    }
+    
+    settingsVersion = version;
+    invalidateCache();
+    
+    if (transactionSynchronizationRegistry != null && transactionSynchronizationRegistry.getTransactionKey() != null) {
+      transactionSynchronizationRegistry.registerInterposedSynchronization(new Synchronization() {
+        
+        @Override
+        public void beforeCompletion() {
+          // Nothing to do before completion
+        }
+        
+        @Override
+        public void afterCompletion(int status) {
+          if (status != Status.STATUS_COMMITTED) {
+            versionCheckedAt = 0l;
+          }
+          
+          invalidateCache();
+        }
+        
+      });
+    }
+  }
+  
+  /**
+   * Clears all cached settings
+   */
+  private void invalidateCache() {
+    cacheGeneration.incrementAndGet();
+    settingCache.clear();
+    prefixCache.clear();
+  }
+  
 }
@@ -0,0 +1,55 @@
+package fi.hacklabmikkeli.labapi.server.stripe;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Cache entry for data loaded from Stripe. 
+ * 
+ * Holds the loaded value and the time it was loaded
+ */
+class StripeCacheEntry<T> {
+
+  private final T value;
+
+  private final long loadedAt;
+
+  private final AtomicBoolean refreshing = new AtomicBoolean();
+
+  /**
+   * Constructor
+   * 
+   * @param value loaded value
+   * @param loadedAt time the value was loaded in milliseconds
+   */
+  StripeCacheEntry(T value, long loadedAt) {
+    this.value = value;
+    this.loadedAt = loadedAt;
+  }
+
+  /**
+   * @return loaded value
+   */
+  public T getValue() {
+    return value;
+  }
+
+  /**
+   * Returns age of the entry
+   * 
+   * @param now current time in milliseconds
+   * @return age of the entry in milliseconds
+   */
+  public long getAge(long now) {
+    return now - loadedAt;
+  }
+
+  /**
+   * Marks entry being refreshed
+   * 
+   * @return true if caller should refresh the entry, false if refresh is already in progress
+   */
+  public boolean startRefresh() {
+    return refreshing.compareAndSet(false, true);
+  }
+
+}
@@ -16,4 +16,12 @@ public class StripeConsts {
   public static final String STRIPE_WEBHOOK_TYPE = "stripe";
 
   public static final String STRIPE_SIGNATURE_HEADER = "Stripe-Signature";
+
+  public static final String STRIPE_CATALOG_CACHE_TTL_SETTING = "stripe-catalog-cache-ttl";
+
+  public static final int DEFAULT_STRIPE_CATALOG_CACHE_TTL = 3600;
+
+  public static final String STRIPE_CUSTOMER_CACHE_TTL_SETTING = "stripe-customer-cache-ttl";
+
+  public static final int DEFAULT_STRIPE_CUSTOMER_CACHE_TTL = 300;
 }
\ No newline at end of file
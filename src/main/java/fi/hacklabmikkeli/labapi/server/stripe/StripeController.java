@@ -1,11 +1,19 @@
 package fi.hacklabmikkeli.labapi.server.stripe;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.enterprise.concurrent.ManagedExecutorService;
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 
@@ -15,11 +23,8 @@ import com.stripe.model.Card;
 import com.stripe.model.Customer;
 import com.stripe.model.ExternalAccountCollection;
 import com.stripe.model.Plan;
-import com.stripe.model.PlanCollection;
 import com.stripe.model.Product;
-import com.stripe.model.ProductCollection;
 import com.stripe.model.Subscription;
-import com.stripe.model.SubscriptionCollection;
 
 import org.slf4j.Logger;
 
@@ -28,12 +33,35 @@ import fi.hacklabmikkeli.labapi.server.settings.SystemSettingController;
 @ApplicationScoped
 public class StripeController {
 
+  private static final String PRODUCTS_CACHE_KEY = "active";
+
+  private static final String CATALOG_PLANS_CACHE_KEY = "active";
+
+  private static final int LIST_PAGE_SIZE = 100;
+
   @Inject
   private SystemSettingController systemSettingController;
 
   @Inject
   private Logger logger;
 
+  @Resource
+  private ManagedExecutorService managedExecutorService;
+
+  private final Map<String, StripeCacheEntry<List<Product>>> productCache = new ConcurrentHashMap<>();
+
+  private final Map<String, StripeCacheEntry<List<Plan>>> planCache = new ConcurrentHashMap<>();
+
+  private final Map<String, StripeCacheEntry<List<Plan>>> catalogPlanCache = new ConcurrentHashMap<>();
+
+  private final AtomicLong catalogGeneration = new AtomicLong();
+
+  private final Map<String, StripeCacheEntry<List<Card>>> cardCache = new ConcurrentHashMap<>();
+
+  private final Map<String, StripeCacheEntry<List<Subscription>>> subscriptionCache = new ConcurrentHashMap<>();
+
+  private final AtomicLong customerGeneration = new AtomicLong();
+
   @PostConstruct
   public void init() {
     Stripe.apiKey = systemSettingController.getSettingValue(StripeConsts.STRIPE_API_KEY_SETTING);
@@ -64,29 +92,24 @@ public class StripeController {
   }
 
   /**
-   * Lists active products from stripe
+   * Lists active products. 
    * 
-   * @return List of active products
+   * Products are served from the catalog cache, see {@link #getCatalogEntry}
+   * 
+   * @return List of active products. Returned list is shared and must not be modified
    */
   public List<Product> listProducts() {
-    Map<String, Object> productParams = new HashMap<>();
-    productParams.put("active", "true");
-
-    try {
-      ProductCollection products = Product.list(productParams);
-      return products.getData();
-    } catch (StripeException e) {
-      logger.error("Error listing products from stripe", e);
-    }
-
-    return null;
+    return getCatalogEntry(productCache, PRODUCTS_CACHE_KEY, this::loadProducts);
   }
 
   /**
-   * Lists plans for single product from stripe
+   * Lists plans for single active product. 
+   * 
+   * Plans are served from the catalog cache, see {@link #getCatalogEntry}. Only products in the cached list of 
+   * active products are looked up, so unknown product ids neither reach Stripe nor grow the cache
    * 
    * @param productId product id
-   * @return list of plans for product
+   * @return list of plans for product or null if product is not an active product. Returned list is shared and must not be modified
    */
   public List<Plan> listPlans(String productId) {
     if (productId == null) {
@@ -94,17 +117,33 @@ public class StripeController {
       return null;
     }
 
-    Map<String, Object> planParams = new HashMap<>();
-    planParams.put("product", productId);
-
-    try {
-      PlanCollection plans = Plan.list(planParams);
-      return plans.getData();
-    } catch (StripeException e) {
-      logger.error("Error listing plans from stripe", e);
+    List<Product> products = listProducts();
+    if (products == null || products.stream().noneMatch(product -> productId.equals(product.getId()))) {
+      return null;
     }
 
-    return null;
+    return getCatalogEntry(planCache, productId, () -> loadPlans(productId));
+  }
+
+  /**
+   * Lists all active plans with their products expanded. 
+   * 
+   * Plans are loaded with a single auto-paginated list call and served from the catalog cache, see {@link #getCatalogEntry}
+   * 
+   * @return list of active plans. Returned list is shared and must not be modified
+   */
+  public List<Plan> listCatalogPlans() {
+    return getCatalogEntry(catalogPlanCache, CATALOG_PLANS_CACHE_KEY, this::loadCatalogPlans);
+  }
+
+  /**
+   * Invalidates cached products and plans
+   */
+  public void invalidateCatalog() {
+    catalogGeneration.incrementAndGet();
+    productCache.clear();
+    planCache.clear();
+    catalogPlanCache.clear();
   }
 
   /**
@@ -116,45 +155,29 @@ public class StripeController {
    */
   public Card createCard(String customerId, String sourceToken) {
     try {
-      Customer customer = Customer.retrieve(customerId);
-      if (customer == null) {
-        return null;
-      }
-
       Map<String, Object> params = new HashMap<>();
       params.put("source", sourceToken);
 
-      return (Card) customer.getSources().create(params);
+      return (Card) getSources(customerId).create(params);
     } catch (StripeException e) {
       logger.error("Error creating card to stripe", e);
+    } finally {
+      invalidateCustomer(customerId);
     }
 
     return null;
   }
 
   /**
-   * Lists customers cards from stripe
+   * Lists customers cards. 
+   * 
+   * Cards are served from the customer cache, see {@link #getCustomerEntry}
    * 
    * @param customerId customer id
-   * @return List of customers cards
+   * @return List of customers cards. Returned list is shared and must not be modified
    */
   public List<Card> listCards(String customerId) {
-    try {
-      Customer customer = Customer.retrieve(customerId);
-      if (customer == null) {
-        return null;
-      }
-
-      Map<String, Object> params = new HashMap<>();
-      params.put("object", "card");
-
-      ExternalAccountCollection sources = customer.getSources().list(params);
-      return sources.getData().stream().map(externalAccount -> (Card) externalAccount).collect(Collectors.toList());
-    } catch (StripeException e) {
-      logger.error("Error listing cards from stripe", e);
-    }
-
-    return null;
+    return getCustomerEntry(cardCache, customerId, () -> loadCards(customerId));
   }
 
   /**
@@ -166,15 +189,12 @@ public class StripeController {
    */
   public boolean deleteCard(String customerId, String cardId) {
     try {
-      Customer customer = Customer.retrieve(customerId);
-      if (customer == null) {
-        return false;
-      }
-
-      customer.getSources().retrieve(cardId).delete();
+      getSources(customerId).retrieve(cardId).delete();
       return true;
     } catch (StripeException e) {
       logger.error("Error listing cards from stripe", e);
+    } finally {
+      invalidateCustomer(customerId);
     }
 
     return false;
@@ -202,6 +222,8 @@ public class StripeController {
       return Subscription.create(params);
     } catch (StripeException e) {
       logger.error("Error creating subscription", e);
+    } finally {
+      invalidateCustomer(customerId);
     }
 
     return null;
@@ -230,7 +252,9 @@ public class StripeController {
 
       Map<String, Object> updateParams = new HashMap<String, Object>();
       updateParams.put("cancel_at_period_end", cancelAtPeriodEnd);
-      return sub.update(updateParams);
+      Subscription result = sub.update(updateParams);
+      invalidateCustomer(customerId);
+      return result;
     } catch (StripeException e) {
       logger.error("Error updating subscription");
     }
@@ -238,22 +262,261 @@ public class StripeController {
   }
 
   /**
-   * Lists customers subscriptions
+   * Lists customers subscriptions. 
+   * 
+   * Subscriptions are served from the customer cache, see {@link #getCustomerEntry}
    * 
    * @param customerId customer id
-   * @return list of customers subscriptions
+   * @return list of customers subscriptions. Returned list is shared and must not be modified
    */
   public List<Subscription> listSubscriptions(String customerId) {
+    return getCustomerEntry(subscriptionCache, customerId, () -> loadSubscriptions(customerId));
+  }
+
+  /**
+   * Loads complete list of customers subscriptions directly from Stripe, bypassing the customer cache. 
+   * 
+   * Used when the list must reflect Stripe's state at the time of the call, e.g. when synchronizing local copies
+   * 
+   * @param customerId customer id
+   * @return list of customers subscriptions or null if loading failed
+   */
+  public List<Subscription> loadCustomerSubscriptions(String customerId) {
     try {
-      Map<String, Object> params = new HashMap<String, Object>();
-      params.put("customer", customerId);
-      SubscriptionCollection subscriptions = Subscription.list(params);
-      return subscriptions.getData();
+      return loadSubscriptions(customerId);
     } catch (StripeException e) {
-      logger.error("Error listing subscriptions");
+      logger.error("Error loading subscriptions from stripe", e);
     }
 
     return null;
   }
 
-}
\ No newline at end of file
+  /**
+   * Invalidates cached cards and subscriptions of customer
+   * 
+   * @param customerId customer id
+   */
+  public void invalidateCustomer(String customerId) {
+    if (customerId == null) {
+      return;
+    }
+
+    customerGeneration.incrementAndGet();
+    cardCache.remove(customerId);
+    subscriptionCache.remove(customerId);
+  }
+
+  /**
+   * Returns catalog entry from the cache. 
+   * 
+   * Entries older than stripe-catalog-cache-ttl seconds are loaded again before returning. 
+   * Entries past three quarters of their TTL are returned as is and refreshed in the background, 
+   * so that frequently used entries never expire in the request path. If loading fails, 
+   * the expired entry is served until Stripe is reachable again.
+   * 
+   * @param cache cache
+   * @param key cache key
+   * @param loader loader for the entry
+   * @return entry value or null if entry could not be loaded
+   */
+  private <T> List<T> getCatalogEntry(Map<String, StripeCacheEntry<List<T>>> cache, String key, StripeLoader<List<T>> loader) {
+    long now = System.currentTimeMillis();
+    long ttl = TimeUnit.SECONDS.toMillis(systemSettingController.getSettingValueInteger(StripeConsts.STRIPE_CATALOG_CACHE_TTL_SETTING, StripeConsts.DEFAULT_STRIPE_CATALOG_CACHE_TTL));
+    StripeCacheEntry<List<T>> entry = cache.get(key);
+
+    if (entry != null && entry.getAge(now) < ttl) {
+      if (entry.getAge(now) > ttl / 4 * 3 && entry.startRefresh()) {
+        managedExecutorService.execute(() -> loadCatalogEntry(cache, key, loader));
+      }
+
+      return entry.getValue();
+    }
+
+    List<T> result = loadCatalogEntry(cache, key, loader);
+    if (result == null && entry != null) {
+      return entry.getValue();
+    }
+
+    return result;
+  }
+
+  /**
+   * Loads catalog entry from Stripe and stores it into the cache. 
+   * 
+   * Entry is not stored if the catalog has been invalidated while loading
+   * 
+   * @param cache cache
+   * @param key cache key
+   * @param loader loader for the entry
+   * @return loaded value or null if loading failed
+   */
+  private <T> List<T> loadCatalogEntry(Map<String, StripeCacheEntry<List<T>>> cache, String key, StripeLoader<List<T>> loader) {
+    long generation = catalogGeneration.get();
+
+    List<T> result;
+    try {
+      result = Collections.unmodifiableList(loader.load());
+    } catch (StripeException e) {
+      logger.error("Error loading catalog from stripe", e);
+      return null;
+    }
+
+    if (generation == catalogGeneration.get()) {
+      cache.put(key, new StripeCacheEntry<>(result, System.currentTimeMillis()));
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns customer entry from the cache. 
+   * 
+   * Entries are kept for stripe-customer-cache-ttl seconds unless our own mutations or 
+   * customer webhooks invalidate them earlier
+   * 
+   * @param cache cache
+   * @param customerId customer id
+   * @param loader loader for the entry
+   * @return entry value or null if entry could not be loaded
+   */
+  private <T> List<T> getCustomerEntry(Map<String, StripeCacheEntry<List<T>>> cache, String customerId, StripeLoader<List<T>> loader) {
+    if (customerId == null) {
+      return null;
+    }
+
+    long now = System.currentTimeMillis();
+    long ttl = TimeUnit.SECONDS.toMillis(systemSettingController.getSettingValueInteger(StripeConsts.STRIPE_CUSTOMER_CACHE_TTL_SETTING, StripeConsts.DEFAULT_STRIPE_CUSTOMER_CACHE_TTL));
+    StripeCacheEntry<List<T>> entry = cache.get(customerId);
+    if (entry != null && entry.getAge(now) < ttl) {
+      return entry.getValue();
+    }
+
+    long generation = customerGeneration.get();
+
+    List<T> result;
+    try {
+      result = Collections.unmodifiableList(loader.load());
+    } catch (StripeException e) {
+      logger.error("Error loading customer data from stripe", e);
+      return null;
+    }
+
+    if (generation == customerGeneration.get()) {
+      cache.put(customerId, new StripeCacheEntry<>(result, now));
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns sources collection of customer without retrieving the customer
+   * 
+   * @param customerId customer id
+   * @return sources collection
+   */
+  private ExternalAccountCollection getSources(String customerId) {
+    ExternalAccountCollection sources = new ExternalAccountCollection();
+    sources.setUrl(String.format("/v1/customers/%s/sources", customerId));
+    return sources;
+  }
+
+  /**
+   * Loads cards of customer from Stripe
+   * 
+   * @param customerId customer id
+   * @return list of cards
+   * @throws StripeException thrown when loading fails
+   */
+  private List<Card> loadCards(String customerId) throws StripeException {
+    Map<String, Object> params = new HashMap<>();
+    params.put("object", "card");
+    params.put("limit", LIST_PAGE_SIZE);
+
+    ExternalAccountCollection sources = getSources(customerId).list(params);
+    return sources.getData().stream().map(externalAccount -> (Card) externalAccount).collect(Collectors.toList());
+  }
+
+  /**
+   * Loads subscriptions of customer from Stripe
+   * 
+   * @param customerId customer id
+   * @return list of subscriptions
+   * @throws StripeException thrown when loading fails
+   */
+  private List<Subscription> loadSubscriptions(String customerId) throws StripeException {
+    Map<String, Object> params = new HashMap<>();
+    params.put("customer", customerId);
+    params.put("limit", LIST_PAGE_SIZE);
+
+    List<Subscription> result = new ArrayList<>();
+    Subscription.list(params).autoPagingIterable().forEach(result::add);
+    return result;
+  }
+
+  /**
+   * Loads all active products from Stripe
+   * 
+   * @return list of active products
+   * @throws StripeException thrown when loading fails
+   */
+  private List<Product> loadProducts() throws StripeException {
+    Map<String, Object> productParams = new HashMap<>();
+    productParams.put("active", "true");
+    productParams.put("limit", LIST_PAGE_SIZE);
+
+    List<Product> result = new ArrayList<>();
+    Product.list(productParams).autoPagingIterable().forEach(result::add);
+    return result;
+  }
+
+  /**
+   * Loads all plans of product from Stripe
+   * 
+   * @param productId product id
+   * @return list of plans
+   * @throws StripeException thrown when loading fails
+   */
+  private List<Plan> loadPlans(String productId) throws StripeException {
+    Map<String, Object> planParams = new HashMap<>();
+    planParams.put("product", productId);
+    planParams.put("limit", LIST_PAGE_SIZE);
+
+    List<Plan> result = new ArrayList<>();
+    Plan.list(planParams).autoPagingIterable().forEach(result::add);
+    return result;
+  }
+
+  /**
+   * Loads all active plans with expanded products from Stripe
+   * 
+   * @return list of plans
+   * @throws StripeException thrown when loading fails
+   */
+  private List<Plan> loadCatalogPlans() throws StripeException {
+    Map<String, Object> planParams = new HashMap<>();
+    planParams.put("active", "true");
+    planParams.put("limit", LIST_PAGE_SIZE);
+    planParams.put("expand", Arrays.asList("data.product"));
+
+    List<Plan> result = new ArrayList<>();
+    Plan.list(planParams).autoPagingIterable().forEach(result::add);
+    return result;
+  }
+
+  /**
+   * Loader for data from Stripe
+   */
+  @FunctionalInterface
+  private interface StripeLoader<T> {
+
+    /**
+     * Loads data from Stripe
+     * 
+     * @return loaded data
+     * @throws StripeException thrown when loading fails
+     */
+    public T load() throws StripeException;
+
+  }
+
+}
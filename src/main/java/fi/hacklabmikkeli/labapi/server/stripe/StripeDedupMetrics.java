@@ -0,0 +1,29 @@
+package fi.hacklabmikkeli.labapi.server.stripe;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Snapshot of Stripe event deduplication metrics
+ * 
+ * @author Heikki Kurhinen
+ */
+@Data
+@AllArgsConstructor
+public class StripeDedupMetrics {
+
+  private long checks;
+
+  private long memoryHits;
+
+  private long storeHits;
+
+  private long misses;
+
+  private long recorded;
+
+  private double hitRate;
+
+  private int cacheSize;
+
+}
@@ -0,0 +1,116 @@
+package fi.hacklabmikkeli.labapi.server.stripe;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Event;
+import javax.enterprise.event.Observes;
+import javax.enterprise.event.TransactionPhase;
+import javax.inject.Inject;
+
+import fi.hacklabmikkeli.labapi.server.persistence.dao.StripeProcessedEventDAO;
+
+/**
+ * Keeps track of Stripe events that have already been processed. 
+ * 
+ * Processed event ids are stored in the database within the transaction that processes the event. Recently 
+ * processed ids are also kept in memory, but only after the transaction has been committed, so that an 
+ * event whose processing was rolled back is never considered processed. The in-memory cache only ever 
+ * answers positively, the database remains the authority for ids it does not hold.
+ * 
+ * @author Heikki Kurhinen
+ */
+@ApplicationScoped
+public class StripeEventDeduplicator {
+
+  private static final int PROCESSED_EVENT_CACHE_SIZE = 10000;
+
+  @Inject
+  private StripeProcessedEventDAO stripeProcessedEventDAO;
+
+  @Inject
+  private Event<StripeEventProcessedEvent> stripeEventProcessedEvent;
+
+  private final Map<String, Boolean> processedEventIds = Collections.synchronizedMap(new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+      return size() > PROCESSED_EVENT_CACHE_SIZE;
+    }
+
+  });
+
+  private final AtomicLong checks = new AtomicLong();
+  private final AtomicLong memoryHits = new AtomicLong();
+  private final AtomicLong storeHits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong recorded = new AtomicLong();
+
+  /**
+   * Returns whether event has already been processed
+   * 
+   * @param eventId Stripe event id
+   * @return whether event has already been processed
+   */
+  public boolean isProcessed(String eventId) {
+    checks.incrementAndGet();
+
+    if (processedEventIds.containsKey(eventId)) {
+      memoryHits.incrementAndGet();
+      return true;
+    }
+
+    if (stripeProcessedEventDAO.findById(eventId) != null) {
+      storeHits.incrementAndGet();
+      processedEventIds.put(eventId, Boolean.TRUE);
+      return true;
+    }
+
+    misses.incrementAndGet();
+    return false;
+  }
+
+  /**
+   * Records event processed within the current transaction. 
+   * 
+   * Entry is flushed immediately, so that a concurrent duplicate fails on the primary key before 
+   * it has caused any side effects and its processing is rolled back
+   * 
+   * @param eventId Stripe event id
+   * @param type Stripe event type
+   */
+  public void markProcessed(String eventId, String type) {
+    stripeProcessedEventDAO.create(eventId, type);
+    stripeProcessedEventDAO.flush();
+    stripeEventProcessedEvent.fire(new StripeEventProcessedEvent(eventId));
+  }
+
+  /**
+   * Caches processed event id after the transaction recording it has been committed
+   * 
+   * @param event event
+   */
+  public void onEventProcessed(@Observes (during = TransactionPhase.AFTER_SUCCESS) StripeEventProcessedEvent event) {
+    recorded.incrementAndGet();
+    processedEventIds.put(event.getEventId(), Boolean.TRUE);
+  }
+
+  /**
+   * Returns deduplication metrics
+   * 
+   * @return deduplication metrics
+   */
+  public StripeDedupMetrics getMetrics() {
+    long checkCount = checks.get();
+    long memoryHitCount = memoryHits.get();
+    long storeHitCount = storeHits.get();
+    double hitRate = checkCount > 0 ? (memoryHitCount + storeHitCount) / (double) checkCount : 0d;
+    return new StripeDedupMetrics(checkCount, memoryHitCount, storeHitCount, misses.get(), recorded.get(), hitRate, processedEventIds.size());
+  }
+
+}
@@ -0,0 +1,142 @@
+package fi.hacklabmikkeli.labapi.server.stripe;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Top level fields of Stripe event and id of the customer the event is about. 
+ * 
+ * Header is read with a streaming reader that skips over event data without building objects from it, 
+ * so that already processed events can be recognized and ordered without parsing the whole event
+ * 
+ * @author Heikki Kurhinen
+ */
+@Data
+@AllArgsConstructor
+public class StripeEventHeader {
+
+  private String id;
+
+  private String type;
+
+  private Boolean livemode;
+
+  private Long created;
+
+  private String customerId;
+
+  /**
+   * Reads event header from event payload
+   * 
+   * @param payload event payload
+   * @return event header
+   * @throws JsonParseException when payload is not a JSON object
+   */
+  public static StripeEventHeader read(String payload) {
+    String id = null;
+    String type = null;
+    Boolean livemode = null;
+    Long created = null;
+    String customerId = null;
+
+    try (JsonReader reader = new JsonReader(new StringReader(payload))) {
+      reader.beginObject();
+      while (reader.hasNext()) {
+        String name = reader.nextName();
+        if (reader.peek() == JsonToken.NULL) {
+          reader.skipValue();
+          continue;
+        }
+
+        switch (name) {
+          case "id":
+            id = reader.nextString();
+            break;
+          case "type":
+            type = reader.nextString();
+            break;
+          case "livemode":
+            livemode = reader.nextBoolean();
+            break;
+          case "created":
+            created = reader.nextLong();
+            break;
+          case "data":
+            customerId = readDataCustomerId(reader);
+            break;
+          default:
+            reader.skipValue();
+            break;
+        }
+      }
+    } catch (IOException | IllegalStateException | NumberFormatException e) {
+      throw new JsonParseException(e);
+    }
+
+    return new StripeEventHeader(id, type, livemode, created, customerId);
+  }
+
+  /**
+   * Reads id of the customer from event data. 
+   * 
+   * Customer events carry the customer itself and customer source, subscription and discount 
+   * events carry an object that refers to the customer
+   * 
+   * @param reader reader positioned at event data
+   * @return customer id or null if event does not refer to a customer
+   * @throws IOException when reading fails
+   */
+  private static String readDataCustomerId(JsonReader reader) throws IOException {
+    String objectId = null;
+    String objectType = null;
+    String customer = null;
+
+    reader.beginObject();
+    while (reader.hasNext()) {
+      if (!"object".equals(reader.nextName()) || reader.peek() != JsonToken.BEGIN_OBJECT) {
+        reader.skipValue();
+        continue;
+      }
+
+      reader.beginObject();
+      while (reader.hasNext()) {
+        String name = reader.nextName();
+        if (reader.peek() != JsonToken.STRING) {
+          reader.skipValue();
+          continue;
+        }
+
+        switch (name) {
+          case "id":
+            objectId = reader.nextString();
+            break;
+          case "object":
+            objectType = reader.nextString();
+            break;
+          case "customer":
+            customer = reader.nextString();
+            break;
+          default:
+            reader.skipValue();
+            break;
+        }
+      }
+      reader.endObject();
+    }
+    reader.endObject();
+
+    if (customer != null) {
+      return customer;
+    }
+
+    return "customer".equals(objectType) ? objectId : null;
+  }
+
+}
@@ -0,0 +1,17 @@
+package fi.hacklabmikkeli.labapi.server.stripe;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * CDI event fired when Stripe event has been recorded as processed
+ * 
+ * @author Heikki Kurhinen
+ */
+@Data
+@AllArgsConstructor
+public class StripeEventProcessedEvent {
+
+  private String eventId;
+
+}
@@ -0,0 +1,40 @@
+package fi.hacklabmikkeli.labapi.server.stripe;
+
+import java.time.OffsetDateTime;
+
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.inject.Inject;
+
+import org.slf4j.Logger;
+
+import fi.hacklabmikkeli.labapi.server.persistence.dao.StripeProcessedEventDAO;
+
+/**
+ * Periodically removes processed Stripe event ids that are too old to be redelivered
+ * 
+ * @author Heikki Kurhinen
+ */
+@Singleton
+public class StripeProcessedEventCleaner {
+
+  private static final int PROCESSED_EVENT_RETENTION_DAYS = 30;
+
+  @Inject
+  private Logger logger;
+
+  @Inject
+  private StripeProcessedEventDAO stripeProcessedEventDAO;
+
+  /**
+   * Removes processed event ids older than retention period. Stripe stops redelivering events after a few days
+   */
+  @Schedule (hour = "3", minute = "41", persistent = false)
+  public void purge() {
+    int deleted = stripeProcessedEventDAO.deleteProcessedBefore(OffsetDateTime.now().minusDays(PROCESSED_EVENT_RETENTION_DAYS));
+    if (deleted > 0) {
+      logger.info("Purged {} processed Stripe event ids", deleted);
+    }
+  }
+
+}
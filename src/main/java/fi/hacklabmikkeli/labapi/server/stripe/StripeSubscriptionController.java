@@ -0,0 +1,171 @@
+package fi.hacklabmikkeli.labapi.server.stripe;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.transaction.Transactional;
+
+import com.stripe.model.Subscription;
+
+import org.slf4j.Logger;
+
+import fi.hacklabmikkeli.labapi.server.persistence.dao.StripeCustomerSyncDAO;
+import fi.hacklabmikkeli.labapi.server.persistence.dao.StripeSubscriptionDAO;
+import fi.hacklabmikkeli.labapi.server.persistence.model.StripeCustomerSync;
+import fi.hacklabmikkeli.labapi.server.persistence.model.StripeSubscription;
+
+/**
+ * Controller for local copies of Stripe subscriptions. 
+ * 
+ * Copies are written from subscription webhooks and from our own Stripe calls. Every write carries 
+ * the creation time of the Stripe state it was made from and older state never overwrites newer one, 
+ * so redelivered and reordered webhooks are harmless.
+ * 
+ * @author Heikki Kurhinen
+ */
+@ApplicationScoped
+public class StripeSubscriptionController {
+
+  public static final String STATUS_CANCELED = "canceled";
+
+  /**
+   * Allowance for clock difference between us and Stripe when state read from Stripe API is timestamped with our own clock
+   */
+  private static final long STRIPE_CLOCK_SKEW = 60;
+
+  @Inject
+  private Logger logger;
+
+  @Inject
+  private StripeSubscriptionDAO stripeSubscriptionDAO;
+
+  @Inject
+  private StripeCustomerSyncDAO stripeCustomerSyncDAO;
+
+  /**
+   * Stores subscription state received from Stripe
+   * 
+   * @param subscription Stripe subscription
+   * @param sourceCreated creation time of the state in epoch seconds, e.g. creation time of the webhook event
+   * @return stored subscription copy
+   */
+  public StripeSubscription upsertSubscription(Subscription subscription, long sourceCreated) {
+    StripeSubscription stripeSubscription = stripeSubscriptionDAO.findById(subscription.getId());
+    String planId = subscription.getPlan() != null ? subscription.getPlan().getId() : null;
+    OffsetDateTime currentPeriodEnd = subscription.getCurrentPeriodEnd() != null ? OffsetDateTime.ofInstant(Instant.ofEpochSecond(subscription.getCurrentPeriodEnd()), ZoneOffset.UTC) : null;
+
+    if (stripeSubscription == null) {
+      return stripeSubscriptionDAO.create(subscription.getId(), subscription.getCustomer(), planId, subscription.getStatus(), subscription.getCancelAtPeriodEnd(), currentPeriodEnd, sourceCreated);
+    }
+
+    if (stripeSubscription.getSourceCreated() > sourceCreated) {
+      logger.info("Ignoring state of subscription {} from {} because newer state from {} is already stored", subscription.getId(), sourceCreated, stripeSubscription.getSourceCreated());
+      return stripeSubscription;
+    }
+
+    return stripeSubscriptionDAO.updateState(stripeSubscription, planId, subscription.getStatus(), subscription.getCancelAtPeriodEnd(), currentPeriodEnd, sourceCreated);
+  }
+
+  /**
+   * Stores subscription state read from Stripe API. 
+   * 
+   * State is timestamped with current time minus clock skew allowance, so that webhooks 
+   * created after the read still apply. Write runs in a transaction of its own, because the subscription 
+   * webhook may insert the same subscription concurrently. Caller should treat the write as best effort, 
+   * a failed write leaves the caller's transaction intact and the webhook stores the state instead
+   * 
+   * @param subscription Stripe subscription
+   * @return stored subscription copy
+   */
+  @Transactional (Transactional.TxType.REQUIRES_NEW)
+  public StripeSubscription upsertSubscription(Subscription subscription) {
+    return upsertSubscription(subscription, getApiSourceCreated());
+  }
+
+  /**
+   * Replaces customers subscription copies with the list read from Stripe API. 
+   * 
+   * Stripe lists all but canceled subscriptions, so copies missing from the list are marked canceled. Customer is 
+   * recorded synchronized, after which webhooks keep the copies up to date. Like {@link #upsertSubscription(Subscription)} 
+   * the write runs in a transaction of its own and is best effort
+   * 
+   * List must be complete and read directly from Stripe, copies are timestamped with the time the list was loaded
+   * 
+   * @param customerId Stripe customer id
+   * @param subscriptions complete list of subscriptions listed from Stripe
+   * @param loadedAt time when loading the list started in epoch seconds
+   */
+  @Transactional (Transactional.TxType.REQUIRES_NEW)
+  public void replaceCustomerSubscriptions(String customerId, List<Subscription> subscriptions, long loadedAt) {
+    long sourceCreated = loadedAt - STRIPE_CLOCK_SKEW;
+    Set<String> subscriptionIds = new HashSet<>();
+
+    for (Subscription subscription : subscriptions) {
+      upsertSubscription(subscription, sourceCreated);
+      subscriptionIds.add(subscription.getId());
+    }
+
+    for (StripeSubscription stripeSubscription : stripeSubscriptionDAO.listByCustomerId(customerId)) {
+      if (!subscriptionIds.contains(stripeSubscription.getId()) && !STATUS_CANCELED.equals(stripeSubscription.getStatus()) && stripeSubscription.getSourceCreated() <= sourceCreated) {
+        stripeSubscriptionDAO.updateState(stripeSubscription, stripeSubscription.getPlanId(), STATUS_CANCELED, stripeSubscription.getCancelAtPeriodEnd(), stripeSubscription.getCurrentPeriodEnd(), sourceCreated);
+      }
+    }
+
+    StripeCustomerSync stripeCustomerSync = stripeCustomerSyncDAO.findById(customerId);
+    if (stripeCustomerSync == null) {
+      stripeCustomerSyncDAO.create(customerId, OffsetDateTime.now());
+    } else {
+      stripeCustomerSyncDAO.updateSyncedAt(stripeCustomerSync, OffsetDateTime.now());
+    }
+  }
+
+  /**
+   * Returns whether customers subscription copies have been synchronized from Stripe API. 
+   * 
+   * Copies of a synchronized customer are complete, so a customer without copies has no subscriptions
+   * 
+   * @param customerId Stripe customer id
+   * @return whether customer has been synchronized
+   */
+  public boolean isCustomerSynced(String customerId) {
+    return stripeCustomerSyncDAO.findById(customerId) != null;
+  }
+
+  /**
+   * Lists copies of customers subscriptions, including canceled ones
+   * 
+   * @param customerId Stripe customer id
+   * @return list of subscription copies
+   */
+  public List<StripeSubscription> listCustomerSubscriptions(String customerId) {
+    return stripeSubscriptionDAO.listByCustomerId(customerId);
+  }
+
+  /**
+   * Counts subscriptions by plan and status
+   * 
+   * @return subscription counts
+   */
+  public List<StripeSubscriptionCount> countSubscriptions() {
+    return stripeSubscriptionDAO.countByPlanAndStatus().stream()
+      .map(row -> new StripeSubscriptionCount((String) row[0], (String) row[1], (Long) row[2]))
+      .collect(Collectors.toList());
+  }
+
+  /**
+   * Returns timestamp for state read from Stripe API
+   * 
+   * @return timestamp in epoch seconds
+   */
+  private long getApiSourceCreated() {
+    return Instant.now().getEpochSecond() - STRIPE_CLOCK_SKEW;
+  }
+
+}
@@ -0,0 +1,21 @@
+package fi.hacklabmikkeli.labapi.server.stripe;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Number of subscriptions with given plan and status
+ * 
+ * @author Heikki Kurhinen
+ */
+@Data
+@AllArgsConstructor
+public class StripeSubscriptionCount {
+
+  private String planId;
+
+  private String status;
+
+  private long count;
+
+}
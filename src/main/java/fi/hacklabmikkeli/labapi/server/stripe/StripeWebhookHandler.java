@@ -3,10 +3,12 @@ package fi.hacklabmikkeli.labapi.server.stripe;
 import java.io.IOException;
 import java.util.stream.Collectors;
 
-import javax.enterprise.context.RequestScoped;
+import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 import javax.servlet.http.HttpServletRequest;
 
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
 import com.stripe.exception.SignatureVerificationException;
 import com.stripe.model.Event;
 import com.stripe.model.StripeObject;
@@ -14,22 +16,29 @@ import com.stripe.model.Subscription;
 import com.stripe.net.ApiResource;
 import com.stripe.net.Webhook;
 
+import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 
 import fi.hacklabmikkeli.labapi.server.keycloak.KeycloakAdminController;
 import fi.hacklabmikkeli.labapi.server.members.MemberController;
 import fi.hacklabmikkeli.labapi.server.persistence.model.Member;
 import fi.hacklabmikkeli.labapi.server.persistence.model.MemberStatus;
+import fi.hacklabmikkeli.labapi.server.persistence.model.StripeSubscription;
 import fi.hacklabmikkeli.labapi.server.settings.SystemSettingController;
 import fi.hacklabmikkeli.labapi.server.webhooks.WebhookException;
 import fi.hacklabmikkeli.labapi.server.webhooks.WebhookHandler;
+import fi.hacklabmikkeli.labapi.server.webhooks.WebhookPayload;
 
 /**
- * Class that handles webhooks from stripe
+ * Class that handles webhooks from stripe. 
+ * 
+ * Stripe may deliver the same event more than once and events are processed from the webhook inbox 
+ * with retries, so processing must be idempotent. Events are partitioned by customer, so events of 
+ * one customer are applied in the order Stripe created them
  * 
  * @author Heikki Kurhinen
  */
-@RequestScoped
+@ApplicationScoped
 public class StripeWebhookHandler implements WebhookHandler {
 
   @Inject
@@ -41,6 +50,15 @@ public class StripeWebhookHandler implements WebhookHandler {
   @Inject
   private KeycloakAdminController keycloakAdminController;
 
+  @Inject
+  private StripeController stripeController;
+
+  @Inject
+  private StripeSubscriptionController stripeSubscriptionController;
+
+  @Inject
+  private StripeEventDeduplicator stripeEventDeduplicator;
+
   @Inject
   private Logger logger;
 
@@ -50,7 +68,7 @@ public class StripeWebhookHandler implements WebhookHandler {
   }
 
   @Override
-  public void handle(HttpServletRequest request) throws WebhookException {
+  public WebhookPayload verify(HttpServletRequest request) throws WebhookException {
     String payload = null;
     String signatureHeader = request.getHeader(StripeConsts.STRIPE_SIGNATURE_HEADER);
     try {
@@ -59,17 +77,57 @@ public class StripeWebhookHandler implements WebhookHandler {
       throw new WebhookException(e);
     }
 
-    Event event = null;
     try {
-      event = Webhook.constructEvent(payload, signatureHeader, systemSettingController.getSettingValue(StripeConsts.STRIPE_SIGNING_KEY_SETTING));
+      Webhook.Signature.verifyHeader(payload, signatureHeader, systemSettingController.getSettingValue(StripeConsts.STRIPE_SIGNING_KEY_SETTING), Webhook.DEFAULT_TOLERANCE);
     } catch (SignatureVerificationException e) {
       throw new WebhookException(e);
     }
 
-    if (inLiveMode() != event.getLivemode()) {
+    StripeEventHeader header = readEventHeader(payload);
+    if (header.getLivemode() == null || inLiveMode() != header.getLivemode()) {
       throw new WebhookException("Operation mode mismatch");
     }
 
+    if (stripeEventDeduplicator.isProcessed(header.getId())) {
+      logger.info("Stripe event {} has already been processed", header.getId());
+      return null;
+    }
+
+    return new WebhookPayload(payload, header.getCustomerId(), header.getCreated());
+  }
+
+  @Override
+  public void process(String payload) throws WebhookException {
+    StripeEventHeader header = readEventHeader(payload);
+    if (stripeEventDeduplicator.isProcessed(header.getId())) {
+      logger.info("Skipping already processed Stripe event {}", header.getId());
+      return;
+    }
+
+    Event event = ApiResource.GSON.fromJson(payload, Event.class);
+    if (event == null || event.getData() == null) {
+      throw new WebhookException("Invalid stripe event payload");
+    }
+
+    stripeEventDeduplicator.markProcessed(event.getId(), event.getType());
+
+    if (StringUtils.startsWithAny(event.getType(), "product.", "plan.")) {
+      stripeController.invalidateCatalog();
+    }
+
+    if (StringUtils.startsWith(event.getType(), "customer.")) {
+      stripeController.invalidateCustomer(getEventCustomerId(event));
+    }
+
+    if (StringUtils.startsWith(event.getType(), "customer.subscription.")) {
+      Subscription subscription = ApiResource.GSON.fromJson(event.getData().getObject().toJson(), Subscription.class);
+      StripeSubscription stored = stripeSubscriptionController.upsertSubscription(subscription, event.getCreated());
+      if (stored.getSourceCreated() > event.getCreated()) {
+        logger.info("Ignoring stale event {} for subscription {}", event.getId(), subscription.getId());
+        return;
+      }
+    }
+
     switch(event.getType()) {
       case "customer.subscription.created":
         handleCustomSubscriptionCreated(event);
@@ -126,6 +184,50 @@ public class StripeWebhookHandler implements WebhookHandler {
     memberController.updateStatus(member, MemberStatus.MEMBER);
   }
 
+  /**
+   * Returns id of the customer the event is about. 
+   * 
+   * Customer events carry the customer itself and customer source, subscription and discount 
+   * events carry an object that refers to the customer
+   * 
+   * @param event webhook event
+   * @return customer id or null if event does not refer to a customer
+   */
+  private String getEventCustomerId(Event event) {
+    JsonObject object = ApiResource.GSON.fromJson(event.getData().getObject().toJson(), JsonObject.class);
+    if (object.has("customer") && object.get("customer").isJsonPrimitive()) {
+      return object.get("customer").getAsString();
+    }
+
+    if (object.has("object") && "customer".equals(object.get("object").getAsString()) && object.has("id")) {
+      return object.get("id").getAsString();
+    }
+
+    return null;
+  }
+
+  /**
+   * Reads top level fields of the event without parsing event data
+   * 
+   * @param payload event payload
+   * @return event header
+   * @throws WebhookException when payload is not a Stripe event
+   */
+  private StripeEventHeader readEventHeader(String payload) throws WebhookException {
+    StripeEventHeader header;
+    try {
+      header = StripeEventHeader.read(payload);
+    } catch (JsonParseException e) {
+      throw new WebhookException(e);
+    }
+
+    if (StringUtils.isBlank(header.getId())) {
+      throw new WebhookException("Stripe event id missing");
+    }
+
+    return header;
+  }
+
   /**
    * Returns if stripe has been configured to run in live mode or not
    */
@@ -18,7 +18,10 @@ import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 
 /**
- * Servlet handling receiving webhooks
+ * Servlet handling receiving webhooks. 
+ * 
+ * Webhooks are only verified and written into the webhook inbox while the request is being handled, 
+ * actual processing happens in the background.
  * 
  * @author Heikki Kurhinen
  */
@@ -34,6 +37,9 @@ public class WebHookServlet extends HttpServlet {
   @Inject
   @Any
   private Instance<WebhookHandler> webhookHandlers;
+
+  @Inject
+  private WebhookInboxController webhookInboxController;
   
   @Override
   protected void doPost(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
@@ -50,14 +56,18 @@ public class WebHookServlet extends HttpServlet {
       while (webhookHandlerIterator.hasNext()) {
         WebhookHandler webhookHandler = webhookHandlerIterator.next();
         if (StringUtils.equals(webhookHandler.getType(), type)) {
-          webhookHandler.handle(request);
+          WebhookPayload payload = webhookHandler.verify(request);
+          if (payload != null) {
+            webhookInboxController.queueMessage(type, payload);
+          }
+
           sendResponse(response, HttpServletResponse.SC_OK, "OK");
           return;
         }
       }
     } catch (WebhookException e) {
-      logger.error("Error processing webhook", e);
-      sendResponse(response, HttpServletResponse.SC_BAD_REQUEST, "webhook processing failed");
+      logger.error("Error verifying webhook", e);
+      sendResponse(response, HttpServletResponse.SC_BAD_REQUEST, "webhook verification failed");
       return;
     }
     
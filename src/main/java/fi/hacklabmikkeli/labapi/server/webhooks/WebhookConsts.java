@@ -0,0 +1,31 @@
+package fi.hacklabmikkeli.labapi.server.webhooks;
+
+/**
+ * Class for webhook constants
+ * 
+ * @author Heikki Kurhinen
+ */
+public class WebhookConsts {
+
+  public static final String WEBHOOK_INBOX_MAX_ATTEMPTS_SETTING = "webhook-inbox-max-attempts";
+
+  public static final String WEBHOOK_INBOX_RETRY_DELAY_SETTING = "webhook-inbox-retry-delay";
+
+  public static final String WEBHOOK_INBOX_MAX_RETRY_DELAY_SETTING = "webhook-inbox-max-retry-delay";
+
+  public static final String WEBHOOK_INBOX_WORKERS_SETTING = "webhook-inbox-workers";
+
+  public static final int DEFAULT_WEBHOOK_INBOX_MAX_ATTEMPTS = 10;
+
+  public static final int DEFAULT_WEBHOOK_INBOX_RETRY_DELAY = 30;
+
+  public static final int DEFAULT_WEBHOOK_INBOX_MAX_RETRY_DELAY = 3600;
+
+  public static final int WEBHOOK_INBOX_LEASE = 300;
+
+  public static final int WEBHOOK_INBOX_ERROR_LENGTH = 1024;
+
+  private WebhookConsts() {
+  }
+
+}
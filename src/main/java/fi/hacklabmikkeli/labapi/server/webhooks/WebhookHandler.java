@@ -3,7 +3,10 @@ package fi.hacklabmikkeli.labapi.server.webhooks;
 import javax.servlet.http.HttpServletRequest;
 
 /**
- * Interface describing webhook handler
+ * Interface describing webhook handler. 
+ * 
+ * Webhooks are verified while the request is being received and processed later from the webhook inbox, 
+ * so processing may be retried and must tolerate receiving the same payload more than once.
  *
  * @author Heikki Kurhinen 
  */
@@ -15,10 +18,20 @@ public interface WebhookHandler {
   public String getType();
 
   /**
-   * Handles webhook request
+   * Reads and verifies webhook request
    * 
    * @param request http servlet request
+   * @return verified payload to be queued for processing or null if the webhook is a duplicate that should only be acknowledged
+   * @throws WebhookException when request could not be read or is not authentic
    */
-  public void handle(HttpServletRequest request) throws WebhookException;
+  public WebhookPayload verify(HttpServletRequest request) throws WebhookException;
 
-}
\ No newline at end of file
+  /**
+   * Processes verified webhook payload
+   * 
+   * @param payload payload string returned by verify
+   * @throws WebhookException when processing fails and should be retried
+   */
+  public void process(String payload) throws WebhookException;
+
+}
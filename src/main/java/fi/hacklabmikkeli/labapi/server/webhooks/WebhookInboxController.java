@@ -0,0 +1,193 @@
+package fi.hacklabmikkeli.labapi.server.webhooks;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.enterprise.concurrent.ManagedExecutorService;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Event;
+import javax.enterprise.event.Observes;
+import javax.enterprise.event.TransactionPhase;
+import javax.inject.Inject;
+import javax.transaction.Transactional;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+
+import fi.hacklabmikkeli.labapi.server.persistence.dao.WebhookInboxMessageDAO;
+import fi.hacklabmikkeli.labapi.server.persistence.model.WebhookInboxMessage;
+import fi.hacklabmikkeli.labapi.server.settings.SystemSettingController;
+
+/**
+ * Controller for webhook inbox. 
+ * 
+ * Verified webhooks are written into the inbox within the receiving request's transaction and 
+ * processed in the background after the transaction has been committed. Messages of different 
+ * partitions are processed in parallel by a bounded number of workers, messages within a partition 
+ * one at a time in source creation order.
+ * 
+ * @author Heikki Kurhinen
+ */
+@ApplicationScoped
+public class WebhookInboxController {
+
+  private static final int BATCH_SIZE = 50;
+
+  @Inject
+  private Logger logger;
+
+  @Inject
+  private SystemSettingController systemSettingController;
+
+  @Inject
+  private WebhookInboxMessageDAO webhookInboxMessageDAO;
+
+  @Inject
+  private WebhookInboxProcessor webhookInboxProcessor;
+
+  @Inject
+  private Event<WebhookInboxEvent> webhookInboxEvent;
+
+  @Resource
+  private ManagedExecutorService managedExecutorService;
+
+  private final AtomicBoolean processingScheduled = new AtomicBoolean();
+
+  private Semaphore workers;
+
+  /**
+   * Reads worker configuration
+   */
+  @PostConstruct
+  public void init() {
+    workers = new Semaphore(systemSettingController.getSettingValueInteger(WebhookConsts.WEBHOOK_INBOX_WORKERS_SETTING, Runtime.getRuntime().availableProcessors()));
+  }
+
+  /**
+   * Writes verified webhook into the inbox. 
+   * 
+   * Write joins the caller's transaction or starts one, so processing is always woken up after the write has been committed
+   * 
+   * @param type webhook type
+   * @param payload verified payload
+   * 
+   * @return created inbox message
+   */
+  @Transactional
+  public WebhookInboxMessage queueMessage(String type, WebhookPayload payload) {
+    String partitionKey = StringUtils.isNotBlank(payload.getPartitionKey()) ? String.format("%s:%s", type, payload.getPartitionKey()) : null;
+    Long sourceCreated = payload.getSourceCreated() != null ? payload.getSourceCreated() : Instant.now().getEpochSecond();
+    WebhookInboxMessage result = webhookInboxMessageDAO.create(UUID.randomUUID(), type, payload.getPayload(), partitionKey, sourceCreated, OffsetDateTime.now());
+    webhookInboxEvent.fire(new WebhookInboxEvent(result.getId()));
+    return result;
+  }
+
+  /**
+   * Wakes up processing after inbox message has been committed
+   * 
+   * @param event event
+   */
+  public void onMessageQueued(@Observes (during = TransactionPhase.AFTER_SUCCESS) WebhookInboxEvent event) {
+    scheduleProcessing();
+  }
+
+  /**
+   * Schedules processing run unless one is already scheduled
+   */
+  public void scheduleProcessing() {
+    if (!processingScheduled.compareAndSet(false, true)) {
+      return;
+    }
+
+    try {
+      managedExecutorService.execute(this::runProcessing);
+    } catch (RuntimeException e) {
+      processingScheduled.set(false);
+      logger.error("Failed to schedule webhook inbox processing", e);
+    }
+  }
+
+  /**
+   * Reserves idle workers, claims at most as many due messages as there are reserved workers and hands the 
+   * messages to the workers. Reservations that were not needed are given back. 
+   * 
+   * Run never waits for a worker, so it does not hold an executor thread while other tasks finish. Workers 
+   * schedule a new run when they finish, which picks up the next message of their partition.
+   */
+  private void runProcessing() {
+    processingScheduled.set(false);
+
+    int reserved = 0;
+    while (reserved < BATCH_SIZE && workers.tryAcquire()) {
+      reserved++;
+    }
+
+    if (reserved == 0) {
+      return;
+    }
+
+    int dispatched = 0;
+    try {
+      List<UUID> messageIds = webhookInboxProcessor.claimMessages(reserved);
+      for (UUID messageId : messageIds) {
+        dispatched++;
+        dispatchMessage(messageId);
+      }
+
+      if (messageIds.size() == reserved) {
+        scheduleProcessing();
+      }
+    } catch (RuntimeException e) {
+      logger.error("Webhook inbox processing failed", e);
+    } finally {
+      if (reserved > dispatched) {
+        workers.release(reserved - dispatched);
+      }
+    }
+  }
+
+  /**
+   * Processes message in a worker. If the worker cannot be started the message is picked up again when its lease expires
+   * 
+   * @param messageId message id
+   */
+  private void dispatchMessage(UUID messageId) {
+    try {
+      managedExecutorService.execute(() -> {
+        try {
+          processMessage(messageId);
+        } finally {
+          workers.release();
+          scheduleProcessing();
+        }
+      });
+    } catch (RuntimeException e) {
+      workers.release();
+      logger.error("Failed to dispatch webhook inbox message {}", messageId, e);
+    }
+  }
+
+  /**
+   * Processes single message and records the failure if processing fails
+   * 
+   * @param messageId message id
+   */
+  private void processMessage(UUID messageId) {
+    try {
+      webhookInboxProcessor.processMessage(messageId);
+    } catch (WebhookException | RuntimeException e) {
+      try {
+        webhookInboxProcessor.recordFailure(messageId, e);
+      } catch (RuntimeException recordException) {
+        logger.error("Failed to record failure of webhook inbox message {}", messageId, recordException);
+      }
+    }
+  }
+
+}
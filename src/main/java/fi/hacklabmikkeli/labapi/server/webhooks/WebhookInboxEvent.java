@@ -0,0 +1,19 @@
+package fi.hacklabmikkeli.labapi.server.webhooks;
+
+import java.util.UUID;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * CDI event fired when verified webhook is written into the inbox
+ * 
+ * @author Heikki Kurhinen
+ */
+@Data
+@AllArgsConstructor
+public class WebhookInboxEvent {
+
+  private UUID messageId;
+
+}
@@ -0,0 +1,151 @@
+package fi.hacklabmikkeli.labapi.server.webhooks;
+
+import java.time.OffsetDateTime;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.inject.Any;
+import javax.enterprise.inject.Instance;
+import javax.inject.Inject;
+import javax.transaction.Transactional;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.slf4j.Logger;
+
+import fi.hacklabmikkeli.labapi.server.persistence.dao.WebhookInboxMessageDAO;
+import fi.hacklabmikkeli.labapi.server.persistence.model.WebhookInboxMessage;
+import fi.hacklabmikkeli.labapi.server.persistence.model.WebhookInboxStatus;
+import fi.hacklabmikkeli.labapi.server.settings.SystemSettingController;
+
+/**
+ * Processes messages from the webhook inbox. 
+ * 
+ * Every step runs in a transaction of its own, so that a failing webhook rolls back only its own 
+ * changes and the failure can still be recorded.
+ * 
+ * @author Heikki Kurhinen
+ */
+@ApplicationScoped
+public class WebhookInboxProcessor {
+
+  @Inject
+  private Logger logger;
+
+  @Inject
+  private SystemSettingController systemSettingController;
+
+  @Inject
+  private WebhookInboxMessageDAO webhookInboxMessageDAO;
+
+  @Inject
+  @Any
+  private Instance<WebhookHandler> webhookHandlers;
+
+  /**
+   * Claims a batch of due messages for processing. 
+   * 
+   * Claimed messages are leased for a while, after which they are considered abandoned and may be claimed again
+   * 
+   * @param maxResults max number of messages to claim
+   * @return ids of claimed messages in creation order
+   */
+  @Transactional (Transactional.TxType.REQUIRES_NEW)
+  public List<UUID> claimMessages(int maxResults) {
+    OffsetDateTime now = OffsetDateTime.now();
+    OffsetDateTime leaseUntil = now.plusSeconds(WebhookConsts.WEBHOOK_INBOX_LEASE);
+
+    return webhookInboxMessageDAO.listDueForUpdate(now, maxResults).stream()
+      .map(message -> webhookInboxMessageDAO.updateClaimed(message, message.getAttempts() + 1, leaseUntil))
+      .map(WebhookInboxMessage::getId)
+      .collect(Collectors.toList());
+  }
+
+  /**
+   * Processes claimed message and marks it processed
+   * 
+   * @param messageId message id
+   * @throws WebhookException when processing fails
+   */
+  @Transactional (value = Transactional.TxType.REQUIRES_NEW, rollbackOn = WebhookException.class)
+  public void processMessage(UUID messageId) throws WebhookException {
+    WebhookInboxMessage message = webhookInboxMessageDAO.findById(messageId);
+    if (message == null || message.getStatus() != WebhookInboxStatus.PROCESSING) {
+      return;
+    }
+
+    WebhookHandler webhookHandler = findWebhookHandler(message.getType());
+    if (webhookHandler == null) {
+      throw new WebhookException(String.format("No handler for webhook type %s", message.getType()));
+    }
+
+    webhookHandler.process(message.getPayload());
+    webhookInboxMessageDAO.updateProcessed(message, OffsetDateTime.now());
+  }
+
+  /**
+   * Records failed processing attempt. 
+   * 
+   * Message is retried with exponential backoff until max attempts have been used, after which it is marked dead 
+   * and left in the inbox for inspection
+   * 
+   * @param messageId message id
+   * @param error processing failure
+   */
+  @Transactional (Transactional.TxType.REQUIRES_NEW)
+  public void recordFailure(UUID messageId, Exception error) {
+    WebhookInboxMessage message = webhookInboxMessageDAO.findById(messageId);
+    if (message == null) {
+      return;
+    }
+
+    int maxAttempts = systemSettingController.getSettingValueInteger(WebhookConsts.WEBHOOK_INBOX_MAX_ATTEMPTS_SETTING, WebhookConsts.DEFAULT_WEBHOOK_INBOX_MAX_ATTEMPTS);
+    String lastError = StringUtils.abbreviate(ExceptionUtils.getRootCauseMessage(error), WebhookConsts.WEBHOOK_INBOX_ERROR_LENGTH);
+    OffsetDateTime now = OffsetDateTime.now();
+
+    if (message.getAttempts() >= maxAttempts) {
+      logger.error("Webhook {} of type {} failed {} times, giving up", message.getId(), message.getType(), message.getAttempts(), error);
+      webhookInboxMessageDAO.updateFailed(message, WebhookInboxStatus.DEAD, now, lastError);
+      return;
+    }
+
+    OffsetDateTime nextAttemptAt = now.plusSeconds(getRetryDelay(message.getAttempts()));
+    logger.warn("Webhook {} of type {} failed on attempt {}, retrying at {}", message.getId(), message.getType(), message.getAttempts(), nextAttemptAt, error);
+    webhookInboxMessageDAO.updateFailed(message, WebhookInboxStatus.PENDING, nextAttemptAt, lastError);
+  }
+
+  /**
+   * Returns delay before next attempt. Delay doubles after every attempt up to the configured maximum
+   * 
+   * @param attempts attempts made so far
+   * @return delay in seconds
+   */
+  private long getRetryDelay(int attempts) {
+    long retryDelay = systemSettingController.getSettingValueInteger(WebhookConsts.WEBHOOK_INBOX_RETRY_DELAY_SETTING, WebhookConsts.DEFAULT_WEBHOOK_INBOX_RETRY_DELAY);
+    long maxRetryDelay = systemSettingController.getSettingValueInteger(WebhookConsts.WEBHOOK_INBOX_MAX_RETRY_DELAY_SETTING, WebhookConsts.DEFAULT_WEBHOOK_INBOX_MAX_RETRY_DELAY);
+    int shift = Math.min(Math.max(attempts - 1, 0), 30);
+    return Math.min(retryDelay << shift, maxRetryDelay);
+  }
+
+  /**
+   * Finds handler for webhook type
+   * 
+   * @param type webhook type
+   * @return handler or null if not found
+   */
+  private WebhookHandler findWebhookHandler(String type) {
+    Iterator<WebhookHandler> webhookHandlerIterator = webhookHandlers.iterator();
+    while (webhookHandlerIterator.hasNext()) {
+      WebhookHandler webhookHandler = webhookHandlerIterator.next();
+      if (StringUtils.equals(webhookHandler.getType(), type)) {
+        return webhookHandler;
+      }
+    }
+
+    return null;
+  }
+
+}
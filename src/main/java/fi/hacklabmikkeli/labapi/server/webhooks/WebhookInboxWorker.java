@@ -0,0 +1,51 @@
+package fi.hacklabmikkeli.labapi.server.webhooks;
+
+import java.time.OffsetDateTime;
+
+import javax.ejb.Schedule;
+import javax.ejb.Singleton;
+import javax.inject.Inject;
+
+import org.slf4j.Logger;
+
+import fi.hacklabmikkeli.labapi.server.persistence.dao.WebhookInboxMessageDAO;
+
+/**
+ * Periodically retries failed webhooks and removes old processed webhooks from the inbox
+ * 
+ * @author Heikki Kurhinen
+ */
+@Singleton
+public class WebhookInboxWorker {
+
+  private static final int PROCESSED_RETENTION_DAYS = 7;
+
+  @Inject
+  private Logger logger;
+
+  @Inject
+  private WebhookInboxController webhookInboxController;
+
+  @Inject
+  private WebhookInboxMessageDAO webhookInboxMessageDAO;
+
+  /**
+   * Periodically processes messages that are due for retry
+   */
+  @Schedule (hour = "*", minute = "*", second = "*/5", persistent = false)
+  public void retry() {
+    webhookInboxController.scheduleProcessing();
+  }
+
+  /**
+   * Periodically removes old processed messages. Dead messages are kept for inspection
+   */
+  @Schedule (hour = "*", minute = "23", persistent = false)
+  public void purgeProcessed() {
+    int deleted = webhookInboxMessageDAO.deleteProcessedBefore(OffsetDateTime.now().minusDays(PROCESSED_RETENTION_DAYS));
+    if (deleted > 0) {
+      logger.info("Purged {} processed webhook inbox messages", deleted);
+    }
+  }
+
+}
@@ -0,0 +1,24 @@
+package fi.hacklabmikkeli.labapi.server.webhooks;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Verified webhook payload with ordering information. 
+ * 
+ * Webhooks sharing a partition key are processed one at a time in source creation order, webhooks 
+ * without a partition key or with different keys are processed in parallel.
+ * 
+ * @author Heikki Kurhinen
+ */
+@Data
+@AllArgsConstructor
+public class WebhookPayload {
+
+  private String payload;
+
+  private String partitionKey;
+
+  private Long sourceCreated;
+
+}
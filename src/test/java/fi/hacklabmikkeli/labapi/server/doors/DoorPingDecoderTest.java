@@ -0,0 +1,78 @@
+package fi.hacklabmikkeli.labapi.server.doors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.UUID;
+
+import org.junit.Test;
+
+/**
+ * Tests for door ping payload decoding
+ * 
+ * @author Heikki Kurhinen
+ */
+public class DoorPingDecoderTest {
+
+  private static final UUID DOOR_ID = UUID.fromString("f47ac10b-58cc-4372-a567-0e02b2c3d479");
+
+  @Test
+  public void testBinary() {
+    assertEquals(DOOR_ID, DoorPingDecoder.decode(toBytes(DOOR_ID)));
+  }
+
+  @Test
+  public void testBinaryHighBits() {
+    UUID doorId = new UUID(-1l, Long.MIN_VALUE);
+    assertEquals(doorId, DoorPingDecoder.decode(toBytes(doorId)));
+  }
+
+  @Test
+  public void testText() {
+    assertEquals(DOOR_ID, DoorPingDecoder.decode(DOOR_ID.toString().getBytes(StandardCharsets.US_ASCII)));
+  }
+
+  @Test
+  public void testTextUpperCase() {
+    assertEquals(DOOR_ID, DoorPingDecoder.decode(DOOR_ID.toString().toUpperCase(Locale.ROOT).getBytes(StandardCharsets.US_ASCII)));
+  }
+
+  @Test
+  public void testTextWithLineBreak() {
+    assertEquals(DOOR_ID, DoorPingDecoder.decode(String.format("%s\n", DOOR_ID).getBytes(StandardCharsets.US_ASCII)));
+    assertEquals(DOOR_ID, DoorPingDecoder.decode(String.format("%s\r\n", DOOR_ID).getBytes(StandardCharsets.US_ASCII)));
+  }
+
+  @Test
+  public void testInvalidLength() {
+    assertNull(DoorPingDecoder.decode(null));
+    assertNull(DoorPingDecoder.decode(new byte[0]));
+    assertNull(DoorPingDecoder.decode(new byte[15]));
+    assertNull(DoorPingDecoder.decode(DOOR_ID.toString().substring(1).getBytes(StandardCharsets.US_ASCII)));
+    assertNull(DoorPingDecoder.decode(String.format("%s ", DOOR_ID).getBytes(StandardCharsets.US_ASCII)));
+  }
+
+  @Test
+  public void testInvalidText() {
+    assertNull(DoorPingDecoder.decode("f47ac10b-58cc-4372-a567-0e02b2c3d47g".getBytes(StandardCharsets.US_ASCII)));
+    assertNull(DoorPingDecoder.decode("f47ac10b058cc-4372-a567-0e02b2c3d479".getBytes(StandardCharsets.US_ASCII)));
+    assertNull(DoorPingDecoder.decode("f47ac10b-58cc-4372-a567-0e02b2c3d4\n\n".getBytes(StandardCharsets.US_ASCII)));
+  }
+
+  /**
+   * Converts UUID into 16 byte binary payload
+   * 
+   * @param uuid uuid
+   * @return payload
+   */
+  private byte[] toBytes(UUID uuid) {
+    return ByteBuffer.allocate(16)
+      .putLong(uuid.getMostSignificantBits())
+      .putLong(uuid.getLeastSignificantBits())
+      .array();
+  }
+
+}
@@ -0,0 +1,106 @@
+package fi.hacklabmikkeli.labapi.server.mqtt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.eclipse.paho.client.mqttv3.IMqttMessageListener;
+import org.junit.Test;
+
+/**
+ * Tests for MQTT topic matching and routing
+ * 
+ * @author Heikki Kurhinen
+ */
+public class MqttTopicRouterTest {
+
+  private static final String PING_TOPIC = "door/ping";
+  private static final String ACK_TOPIC = "door/+/ack";
+
+  private final IMqttMessageListener pingListener = mock(IMqttMessageListener.class);
+
+  private final IMqttMessageListener ackListener = mock(IMqttMessageListener.class);
+
+  @Test
+  public void testSubscriptionTopicsWithoutGroup() {
+    MqttTopicRouter router = createRouter(null);
+    assertEquals(Arrays.asList(PING_TOPIC, ACK_TOPIC), new ArrayList<>(router.getSubscriptionTopics()));
+  }
+
+  @Test
+  public void testSubscriptionTopicsWithGroup() {
+    MqttTopicRouter router = createRouter("lab-api");
+    assertEquals(Arrays.asList(PING_TOPIC, "$share/lab-api/door/+/ack"), new ArrayList<>(router.getSubscriptionTopics()));
+  }
+
+  @Test
+  public void testRouteExactTopic() {
+    MqttTopicRouter router = createRouter(null);
+    assertEquals(Collections.singletonList(pingListener), router.route(PING_TOPIC));
+  }
+
+  @Test
+  public void testRouteWildcardTopic() {
+    MqttTopicRouter router = createRouter(null);
+    assertEquals(Collections.singletonList(ackListener), router.route("door/f47ac10b-58cc-4372-a567-0e02b2c3d479/ack"));
+  }
+
+  @Test
+  public void testRouteSharedSubscriptionByOriginalTopic() {
+    MqttTopicRouter router = createRouter("lab-api");
+    assertEquals(Collections.singletonList(ackListener), router.route("door/f47ac10b-58cc-4372-a567-0e02b2c3d479/ack"));
+    assertTrue(router.route("$share/lab-api/door/f47ac10b-58cc-4372-a567-0e02b2c3d479/ack").isEmpty());
+  }
+
+  @Test
+  public void testRouteUnmatchedTopic() {
+    MqttTopicRouter router = createRouter(null);
+    assertTrue(router.route("door/ping/extra").isEmpty());
+    assertTrue(router.route("door/f47ac10b/ack/extra").isEmpty());
+    assertTrue(router.route("door//ack/x").isEmpty());
+    assertTrue(router.route("other/ping").isEmpty());
+  }
+
+  @Test
+  public void testRouteMultipleListeners() {
+    IMqttMessageListener allListener = mock(IMqttMessageListener.class);
+    MqttTopicRouter router = createRouter(null);
+    router.addListener(createListener("door/#", false), allListener);
+
+    assertEquals(Arrays.asList(pingListener, allListener), router.route(PING_TOPIC));
+    assertEquals(Arrays.asList(ackListener, allListener), router.route("door/f47ac10b/ack"));
+  }
+
+  /**
+   * Creates router with door ping listener and shareable door acknowledgement listener
+   * 
+   * @param sharedSubscriptionGroup shared subscription group
+   * @return router
+   */
+  private MqttTopicRouter createRouter(String sharedSubscriptionGroup) {
+    MqttTopicRouter result = new MqttTopicRouter(sharedSubscriptionGroup);
+    result.addListener(createListener(PING_TOPIC, false), pingListener);
+    result.addListener(createListener(ACK_TOPIC, true), ackListener);
+    return result;
+  }
+
+  /**
+   * Creates listener mock
+   * 
+   * @param topic topic
+   * @param shared whether listener may be subscribed as shared subscription
+   * @return listener mock
+   */
+  private LabApiMqttListener createListener(String topic, boolean shared) {
+    LabApiMqttListener result = mock(LabApiMqttListener.class);
+    when(result.getTopic()).thenReturn(topic);
+    when(result.isShared()).thenReturn(shared);
+    return result;
+  }
+
+}
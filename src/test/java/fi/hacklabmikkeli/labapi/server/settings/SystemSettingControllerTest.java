@@ -0,0 +1,180 @@
+package fi.hacklabmikkeli.labapi.server.settings;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.lang.reflect.Field;
+import java.util.UUID;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.slf4j.Logger;
+
+import fi.hacklabmikkeli.labapi.server.persistence.dao.SystemSettingDAO;
+import fi.hacklabmikkeli.labapi.server.persistence.model.SystemSetting;
+
+/**
+ * Tests for system setting cache invalidation
+ * 
+ * @author Heikki Kurhinen
+ */
+@RunWith (MockitoJUnitRunner.Silent.class)
+public class SystemSettingControllerTest {
+
+  private static final String SETTINGS_VERSION_KEY = "system-settings-version";
+  private static final String KEY = "test-setting";
+
+  @Mock
+  private Logger logger;
+
+  @Mock
+  private SystemSettingDAO systemSettingDAO;
+
+  @Mock
+  private TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+
+  @InjectMocks
+  private SystemSettingController systemSettingController;
+
+  @Before
+  public void setUp() {
+    when(systemSettingDAO.findByKey(SETTINGS_VERSION_KEY)).thenReturn(createSetting(SETTINGS_VERSION_KEY, "1"));
+    when(systemSettingDAO.findByKey(KEY)).thenReturn(createSetting(KEY, "first"));
+    when(systemSettingDAO.updateValue(any(), anyString())).thenAnswer(invocation -> {
+      SystemSetting setting = invocation.getArgument(0);
+      setting.setValue(invocation.getArgument(1));
+      return setting;
+    });
+  }
+
+  @Test
+  public void testValueIsCached() {
+    assertEquals("first", systemSettingController.getSettingValue(KEY));
+    assertEquals("first", systemSettingController.getSettingValue(KEY));
+    verify(systemSettingDAO, times(1)).findByKey(KEY);
+  }
+
+  @Test
+  public void testMissingValueIsCached() {
+    assertEquals("default", systemSettingController.getSettingValue("missing", "default"));
+    assertEquals(Integer.valueOf(5), systemSettingController.getSettingValueInteger("missing", 5));
+    verify(systemSettingDAO, times(1)).findByKey("missing");
+  }
+
+  @Test
+  public void testLocalChangeInvalidatesCache() {
+    assertEquals("first", systemSettingController.getSettingValue(KEY));
+
+    systemSettingController.updateSystemSetting(systemSettingDAO.findByKey(KEY), "second");
+    when(systemSettingDAO.findByKey(KEY)).thenReturn(createSetting(KEY, "second"));
+
+    assertEquals("second", systemSettingController.getSettingValue(KEY));
+  }
+
+  @Test
+  public void testRemoteVersionChangeInvalidatesCache() throws ReflectiveOperationException {
+    assertEquals("first", systemSettingController.getSettingValue(KEY));
+
+    when(systemSettingDAO.findByKey(KEY)).thenReturn(createSetting(KEY, "second"));
+    assertEquals("first", systemSettingController.getSettingValue(KEY));
+
+    when(systemSettingDAO.findByKey(SETTINGS_VERSION_KEY)).thenReturn(createSetting(SETTINGS_VERSION_KEY, "2"));
+    expireVersionCheck();
+
+    assertEquals("second", systemSettingController.getSettingValue(KEY));
+  }
+
+  @Test
+  public void testUnchangedVersionKeepsCache() throws ReflectiveOperationException {
+    assertEquals("first", systemSettingController.getSettingValue(KEY));
+
+    when(systemSettingDAO.findByKey(KEY)).thenReturn(createSetting(KEY, "second"));
+    expireVersionCheck();
+
+    assertEquals("first", systemSettingController.getSettingValue(KEY));
+  }
+
+  @Test
+  public void testCommitInvalidatesValuesReadDuringTransaction() {
+    when(transactionSynchronizationRegistry.getTransactionKey()).thenReturn(new Object());
+
+    systemSettingController.updateSystemSetting(systemSettingDAO.findByKey(KEY), "second");
+
+    ArgumentCaptor<Synchronization> synchronization = ArgumentCaptor.forClass(Synchronization.class);
+    verify(transactionSynchronizationRegistry).registerInterposedSynchronization(synchronization.capture());
+
+    // Concurrent request reads the old value before the change has been committed
+    when(systemSettingDAO.findByKey(KEY)).thenReturn(createSetting(KEY, "first"));
+    assertEquals("first", systemSettingController.getSettingValue(KEY));
+
+    when(systemSettingDAO.findByKey(KEY)).thenReturn(createSetting(KEY, "second"));
+    synchronization.getValue().afterCompletion(Status.STATUS_COMMITTED);
+
+    assertEquals("second", systemSettingController.getSettingValue(KEY));
+  }
+
+  @Test
+  public void testRollbackRechecksVersion() {
+    when(transactionSynchronizationRegistry.getTransactionKey()).thenReturn(new Object());
+
+    systemSettingController.updateSystemSetting(systemSettingDAO.findByKey(KEY), "second");
+
+    ArgumentCaptor<Synchronization> synchronization = ArgumentCaptor.forClass(Synchronization.class);
+    verify(transactionSynchronizationRegistry).registerInterposedSynchronization(synchronization.capture());
+
+    // Rolled back version stamp is read again from the database on next access
+    when(systemSettingDAO.findByKey(SETTINGS_VERSION_KEY)).thenReturn(createSetting(SETTINGS_VERSION_KEY, "1"));
+    when(systemSettingDAO.findByKey(KEY)).thenReturn(createSetting(KEY, "first"));
+    synchronization.getValue().afterCompletion(Status.STATUS_ROLLEDBACK);
+
+    assertEquals("first", systemSettingController.getSettingValue(KEY));
+    verify(systemSettingDAO, times(2)).findByKey(SETTINGS_VERSION_KEY);
+  }
+
+  @Test
+  public void testNoSynchronizationOutsideTransaction() {
+    systemSettingController.updateSystemSetting(systemSettingDAO.findByKey(KEY), "second");
+    verify(transactionSynchronizationRegistry, never()).registerInterposedSynchronization(any());
+  }
+
+  /**
+   * Makes the next access check the settings version stamp as if the check interval had passed
+   * 
+   * @throws ReflectiveOperationException when field can not be accessed
+   */
+  private void expireVersionCheck() throws ReflectiveOperationException {
+    Field field = SystemSettingController.class.getDeclaredField("versionCheckedAt");
+    field.setAccessible(true);
+    field.setLong(systemSettingController, 0l);
+  }
+
+  /**
+   * Creates setting entity
+   * 
+   * @param key key
+   * @param value value
+   * @return setting entity
+   */
+  private SystemSetting createSetting(String key, String value) {
+    SystemSetting result = new SystemSetting();
+    result.setId(UUID.randomUUID());
+    result.setKey(key);
+    result.setValue(value);
+    return result;
+  }
+
+}
@@ -0,0 +1,82 @@
+package fi.hacklabmikkeli.labapi.server.stripe;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import com.google.gson.JsonParseException;
+
+/**
+ * Tests for reading Stripe event headers
+ * 
+ * @author Heikki Kurhinen
+ */
+public class StripeEventHeaderTest {
+
+  @Test
+  public void testReadTopLevelFields() {
+    StripeEventHeader header = StripeEventHeader.read("{\"id\":\"evt_1\",\"object\":\"event\",\"api_version\":\"2018-02-28\",\"created\":1534156800,\"livemode\":true,\"pending_webhooks\":1,\"type\":\"invoice.paid\",\"request\":{\"id\":\"req_1\",\"idempotency_key\":null}}");
+    assertEquals("evt_1", header.getId());
+    assertEquals("invoice.paid", header.getType());
+    assertEquals(Boolean.TRUE, header.getLivemode());
+    assertEquals(Long.valueOf(1534156800l), header.getCreated());
+    assertNull(header.getCustomerId());
+  }
+
+  @Test
+  public void testReadFieldsAfterData() {
+    StripeEventHeader header = StripeEventHeader.read("{\"data\":{\"object\":{\"id\":\"sub_1\",\"object\":\"subscription\",\"customer\":\"cus_1\",\"items\":{\"data\":[{\"id\":\"si_1\",\"plan\":{\"id\":\"plan_1\"}}]}}},\"type\":\"customer.subscription.updated\",\"id\":\"evt_2\",\"livemode\":false,\"created\":1534156801}");
+    assertEquals("evt_2", header.getId());
+    assertEquals("customer.subscription.updated", header.getType());
+    assertEquals(Boolean.FALSE, header.getLivemode());
+    assertEquals(Long.valueOf(1534156801l), header.getCreated());
+    assertEquals("cus_1", header.getCustomerId());
+  }
+
+  @Test
+  public void testCustomerEvent() {
+    StripeEventHeader header = StripeEventHeader.read("{\"id\":\"evt_3\",\"type\":\"customer.updated\",\"data\":{\"object\":{\"id\":\"cus_2\",\"object\":\"customer\",\"email\":\"member@example.com\",\"metadata\":{\"customer\":\"ignored\"}},\"previous_attributes\":{\"email\":\"old@example.com\"}}}");
+    assertEquals("cus_2", header.getCustomerId());
+  }
+
+  @Test
+  public void testExpandedCustomerIsIgnored() {
+    StripeEventHeader header = StripeEventHeader.read("{\"id\":\"evt_4\",\"type\":\"invoice.created\",\"data\":{\"object\":{\"id\":\"in_1\",\"object\":\"invoice\",\"customer\":{\"id\":\"cus_3\"}}}}");
+    assertNull(header.getCustomerId());
+  }
+
+  @Test
+  public void testNullValues() {
+    StripeEventHeader header = StripeEventHeader.read("{\"id\":\"evt_5\",\"type\":null,\"livemode\":null,\"created\":null,\"data\":null}");
+    assertEquals("evt_5", header.getId());
+    assertNull(header.getType());
+    assertNull(header.getLivemode());
+    assertNull(header.getCreated());
+    assertNull(header.getCustomerId());
+  }
+
+  @Test
+  public void testMissingFields() {
+    StripeEventHeader header = StripeEventHeader.read("{}");
+    assertNull(header.getId());
+    assertNull(header.getType());
+    assertNull(header.getCustomerId());
+  }
+
+  @Test (expected = JsonParseException.class)
+  public void testNotObject() {
+    StripeEventHeader.read("[]");
+  }
+
+  @Test (expected = JsonParseException.class)
+  public void testTruncated() {
+    StripeEventHeader.read("{\"id\":\"evt_6\",\"type\":");
+  }
+
+  @Test (expected = JsonParseException.class)
+  public void testInvalidCreated() {
+    StripeEventHeader.read("{\"id\":\"evt_7\",\"created\":\"yesterday\"}");
+  }
+
+}